@@ -0,0 +1,31 @@
+package io.johnathanluong.ecommerce.api.config;
+
+import java.time.Duration;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.cache.CacheManager;
+import org.springframework.cache.annotation.EnableCaching;
+import org.springframework.cache.caffeine.CaffeineCacheManager;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+
+import com.github.benmanes.caffeine.cache.Caffeine;
+
+@Configuration
+@EnableCaching
+public class CacheConfig {
+    public static final String PRODUCTS_CACHE = "products";
+
+    // Stats are recorded so the actuator binds cache.gets/cache.evictions metrics for every registered cache
+    @Bean
+    public CacheManager cacheManager(@Value("${app.cache.products.max-size:10000}") long productsMaxSize,
+            @Value("${app.cache.products.ttl-seconds:300}") long productsTtlSeconds) {
+        CaffeineCacheManager cacheManager = new CaffeineCacheManager();
+        cacheManager.registerCustomCache(PRODUCTS_CACHE, Caffeine.newBuilder()
+            .maximumSize(productsMaxSize)
+            .expireAfterWrite(Duration.ofSeconds(productsTtlSeconds))
+            .recordStats()
+            .build());
+        return cacheManager;
+    }
+}
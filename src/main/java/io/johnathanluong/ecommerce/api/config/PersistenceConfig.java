@@ -0,0 +1,41 @@
+package io.johnathanluong.ecommerce.api.config;
+
+import java.util.List;
+
+import javax.sql.DataSource;
+
+import org.hibernate.cfg.AvailableSettings;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.orm.jpa.HibernatePropertiesCustomizer;
+import org.springframework.boot.jdbc.init.DataSourceScriptDatabaseInitializer;
+import org.springframework.boot.sql.init.DatabaseInitializationMode;
+import org.springframework.boot.sql.init.DatabaseInitializationSettings;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.jdbc.datasource.init.ScriptUtils;
+
+@Configuration
+public class PersistenceConfig {
+
+    // Groups inserts and updates into JDBC batches; entities with sequence ids (not IDENTITY) are the ones that benefit
+    @Bean
+    public HibernatePropertiesCustomizer jdbcBatchingCustomizer(@Value("${app.jpa.jdbc-batch-size:500}") int batchSize) {
+        return properties -> {
+            properties.putIfAbsent(AvailableSettings.STATEMENT_BATCH_SIZE, batchSize);
+            properties.putIfAbsent(AvailableSettings.ORDER_INSERTS, true);
+            properties.putIfAbsent(AvailableSettings.ORDER_UPDATES, true);
+        };
+    }
+
+    // Explicit DDL for the product id sequence; Boot runs script initializers before the EntityManagerFactory,
+    // so the sequence is created and aligned before Hibernate reads from it or any request comes in
+    @Bean
+    public DataSourceScriptDatabaseInitializer productSequenceInitializer(DataSource dataSource) {
+        DatabaseInitializationSettings settings = new DatabaseInitializationSettings();
+        settings.setSchemaLocations(List.of("classpath:db/products-sequence.sql"));
+        // The script is a single DO block whose body contains semicolons
+        settings.setSeparator(ScriptUtils.EOF_STATEMENT_SEPARATOR);
+        settings.setMode(DatabaseInitializationMode.ALWAYS);
+        return new DataSourceScriptDatabaseInitializer(dataSource, settings);
+    }
+}
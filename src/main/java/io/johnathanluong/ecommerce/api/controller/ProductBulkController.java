@@ -0,0 +1,17 @@
+package io.johnathanluong.ecommerce.api.controller;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.List;
+
+import org.springframework.http.ResponseEntity;
+
+import io.johnathanluong.ecommerce.api.dto.ImportReport;
+import io.johnathanluong.ecommerce.api.dto.SkuUpsert;
+import io.johnathanluong.ecommerce.api.dto.UpsertReport;
+
+public interface ProductBulkController {
+    ResponseEntity<ImportReport> importJson(InputStream body) throws IOException;
+    ResponseEntity<ImportReport> importCsv(InputStream body) throws IOException;
+    ResponseEntity<UpsertReport> upsertBySku(List<SkuUpsert> rows);
+}
@@ -0,0 +1,50 @@
+package io.johnathanluong.ecommerce.api.controller;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.List;
+
+import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.*;
+
+import io.johnathanluong.ecommerce.api.dto.ImportReport;
+import io.johnathanluong.ecommerce.api.dto.SkuUpsert;
+import io.johnathanluong.ecommerce.api.dto.UpsertReport;
+import io.johnathanluong.ecommerce.api.service.ProductBulkService;
+
+// Import bodies are read as a stream, never buffered whole; rows that fail are listed in the report rather than failing the request
+@RestController
+@RequestMapping("/api/products")
+public class ProductBulkControllerImpl implements ProductBulkController {
+    private static final String TEXT_CSV_VALUE = "text/csv";
+
+    private final ProductBulkService productBulkService;
+
+    public ProductBulkControllerImpl(ProductBulkService productBulkService){
+        this.productBulkService = productBulkService;
+    }
+
+    @PostMapping(path = "/import", consumes = MediaType.APPLICATION_JSON_VALUE)
+    public ResponseEntity<ImportReport> importJson(InputStream body) throws IOException{
+        try{
+            return ResponseEntity.ok(productBulkService.importJson(body));
+        } catch(IllegalArgumentException e){
+            return ResponseEntity.badRequest().build();
+        }
+    }
+
+    @PostMapping(path = "/import", consumes = TEXT_CSV_VALUE)
+    public ResponseEntity<ImportReport> importCsv(InputStream body) throws IOException{
+        try{
+            return ResponseEntity.ok(productBulkService.importCsv(body));
+        } catch(IllegalArgumentException e){
+            return ResponseEntity.badRequest().build();
+        }
+    }
+
+    @PostMapping(path = "/upsert", consumes = MediaType.APPLICATION_JSON_VALUE)
+    public ResponseEntity<UpsertReport> upsertBySku(@RequestBody List<SkuUpsert> rows){
+        return ResponseEntity.ok(productBulkService.upsertBySku(rows));
+    }
+}
@@ -1,15 +1,30 @@
 package io.johnathanluong.ecommerce.api.controller;
 
+import java.io.IOException;
+import java.math.BigDecimal;
 import java.util.List;
+import java.util.Set;
 
 import org.springframework.http.ResponseEntity;
 
+import io.johnathanluong.ecommerce.api.dto.CursorPage;
+import io.johnathanluong.ecommerce.api.dto.FacetedProductPage;
+import io.johnathanluong.ecommerce.api.dto.ProductSummary;
+import io.johnathanluong.ecommerce.api.dto.ProductView;
 import io.johnathanluong.ecommerce.api.entity.Product;
+import jakarta.servlet.http.HttpServletResponse;
 
 public interface ProductController {
-    ResponseEntity<Product> createProduct(Product product);
-    ResponseEntity<Product> getProductById(Long id);
-    ResponseEntity<List<Product>> getAllProducts();
-    ResponseEntity<Product> updateProduct(Long id, Product updatedProduct);
+    ResponseEntity<ProductView> createProduct(Product product);
+    ResponseEntity<ProductView> getProductById(Long id);
+    ResponseEntity<ProductView> getProductBySku(String sku);
+    ResponseEntity<CursorPage<ProductSummary>> getProducts(String after, Integer limit);
+    ResponseEntity<FacetedProductPage> filterProducts(Set<String> category, Set<String> brand, BigDecimal minPrice,
+                                                      BigDecimal maxPrice, Boolean inStock, String after, Integer limit);
+    ResponseEntity<List<ProductSummary>> searchProducts(String q, Integer limit);
+    void exportProducts(HttpServletResponse response) throws IOException;
+    ResponseEntity<ProductView> updateProduct(Long id, String ifMatch, Product updatedProduct);
+    ResponseEntity<Void> patchProduct(Long id, String ifMatch, Product patch);
+    ResponseEntity<Void> reserveStock(Long id, int quantity);
     ResponseEntity<Void> deleteProduct(Long id);
 }
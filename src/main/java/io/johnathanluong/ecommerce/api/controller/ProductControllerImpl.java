@@ -1,60 +1,184 @@
 package io.johnathanluong.ecommerce.api.controller;
 
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.UncheckedIOException;
+import java.math.BigDecimal;
 import java.net.URI;
 import java.util.List;
+import java.util.Set;
 
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
 import org.springframework.web.servlet.support.ServletUriComponentsBuilder;
 
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.ObjectWriter;
+
+import io.johnathanluong.ecommerce.api.dto.CursorPage;
+import io.johnathanluong.ecommerce.api.dto.FacetedProductPage;
+import io.johnathanluong.ecommerce.api.dto.ProductDetail;
+import io.johnathanluong.ecommerce.api.dto.ProductSummary;
+import io.johnathanluong.ecommerce.api.dto.ProductView;
+import io.johnathanluong.ecommerce.api.dto.StockReservationResult;
 import io.johnathanluong.ecommerce.api.entity.Product;
+import io.johnathanluong.ecommerce.api.exception.PreconditionFailedException;
+import io.johnathanluong.ecommerce.api.index.FacetQuery;
 import io.johnathanluong.ecommerce.api.service.ProductService;
+import io.johnathanluong.ecommerce.api.service.ReviewService;
+import jakarta.servlet.http.HttpServletResponse;
 
 
 @RestController
 @RequestMapping("/api/products")
 public class ProductControllerImpl implements ProductController {
     private final ProductService productService;
+    private final ReviewService reviewService;
+    private final ObjectWriter productDetailWriter;
     
-    public ProductControllerImpl(ProductService productService){
+    public ProductControllerImpl(ProductService productService, ReviewService reviewService, ObjectMapper objectMapper){
         this.productService = productService;
+        this.reviewService = reviewService;
+        this.productDetailWriter = objectMapper.writerFor(ProductDetail.class);
     }
     
     @PostMapping
-    public ResponseEntity<Product> createProduct(@RequestBody Product product){
+    public ResponseEntity<ProductView> createProduct(@RequestBody Product product){
         Product createdProduct = productService.createProduct(product);
         URI location = ServletUriComponentsBuilder.fromCurrentRequest()
             .path("/{id}")
             .buildAndExpand(createdProduct.getId())
             .toUri();
             
-        return ResponseEntity.created(location).body(createdProduct);
+        return ResponseEntity.created(location).body(new ProductView(createdProduct, List.of()));
     }
 
     @GetMapping("/{id}")
-    public ResponseEntity<Product> getProductById(@PathVariable Long id){
+    public ResponseEntity<ProductView> getProductById(@PathVariable Long id){
         Product product = productService.getProductById(id);
         if(product == null){
             return ResponseEntity.notFound().build();
         }
-        return ResponseEntity.ok(product);
+        return ResponseEntity.ok().eTag(Long.toString(product.getVersion())).body(withReviews(product));
+    }
+
+    @GetMapping("/sku/{sku}")
+    public ResponseEntity<ProductView> getProductBySku(@PathVariable String sku){
+        Product product = productService.getProductBySku(sku);
+        if(product == null){
+            return ResponseEntity.notFound().build();
+        }
+        return ResponseEntity.ok().eTag(Long.toString(product.getVersion())).body(withReviews(product));
     }
     
     @GetMapping
-    public ResponseEntity<List<Product>> getAllProducts(){
-        List<Product> products = productService.getAllProducts();
-        return ResponseEntity.ok(products);
+    public ResponseEntity<CursorPage<ProductSummary>> getProducts(@RequestParam(required = false) String after, @RequestParam(required = false) Integer limit){
+        try{
+            CursorPage<ProductSummary> products = productService.getProducts(after, limit);
+            return ResponseEntity.ok(products);
+        } catch(IllegalArgumentException e){
+            return ResponseEntity.badRequest().build();
+        }
+    }
+
+    // Repeat category or brand to select several values of the same facet
+    @GetMapping("/facets")
+    public ResponseEntity<FacetedProductPage> filterProducts(@RequestParam(required = false) Set<String> category,
+                                                             @RequestParam(required = false) Set<String> brand,
+                                                             @RequestParam(required = false) BigDecimal minPrice,
+                                                             @RequestParam(required = false) BigDecimal maxPrice,
+                                                             @RequestParam(required = false) Boolean inStock,
+                                                             @RequestParam(required = false) String after,
+                                                             @RequestParam(required = false) Integer limit){
+        try{
+            FacetQuery query = new FacetQuery(category, brand, minPrice, maxPrice, inStock);
+            return ResponseEntity.ok(productService.filterProducts(query, after, limit));
+        } catch(IllegalArgumentException e){
+            return ResponseEntity.badRequest().build();
+        }
+    }
+
+    @GetMapping("/search")
+    public ResponseEntity<List<ProductSummary>> searchProducts(@RequestParam String q, @RequestParam(required = false) Integer limit){
+        try{
+            List<ProductSummary> products = productService.searchProducts(q, limit);
+            return ResponseEntity.ok(products);
+        } catch(IllegalArgumentException e){
+            return ResponseEntity.badRequest().build();
+        }
+    }
+
+    // Writes one JSON document per line straight from the database cursor
+    @GetMapping(value = "/export", produces = MediaType.APPLICATION_NDJSON_VALUE)
+    public void exportProducts(HttpServletResponse response) throws IOException{
+        response.setContentType(MediaType.APPLICATION_NDJSON_VALUE);
+        response.flushBuffer();
+
+        OutputStream out = response.getOutputStream();
+        productService.exportProducts(product -> {
+            try{
+                out.write(productDetailWriter.writeValueAsBytes(product));
+                out.write('\n');
+            } catch(IOException e){
+                throw new UncheckedIOException(e);
+            }
+        });
+        out.flush();
     }
     
+    // With If-Match the update only applies to the version the client last saw; a stale ETag gets a 412
     @PutMapping("/{id}")
-    public ResponseEntity<Product> updateProduct(@PathVariable Long id, Product updatedProduct){        
-        Product foundProduct = productService.getProductById(id);
-        if(foundProduct == null){
+    public ResponseEntity<ProductView> updateProduct(@PathVariable Long id, @RequestHeader(value = HttpHeaders.IF_MATCH, required = false) String ifMatch,
+                                                 @RequestBody Product updatedProduct){
+        try{
+            Product newProduct = productService.updateProduct(id, updatedProduct, parseIfMatch(ifMatch));
+            if(newProduct == null){
+                return ResponseEntity.notFound().build();
+            }
+            return ResponseEntity.ok().eTag(Long.toString(newProduct.getVersion())).body(withReviews(newProduct));
+        } catch(PreconditionFailedException e){
+            return ResponseEntity.status(HttpStatus.PRECONDITION_FAILED).build();
+        }
+    }
+
+    // Writes only the fields present in the body, in a single UPDATE; the new version is not read back, so no ETag is returned
+    @PatchMapping("/{id}")
+    public ResponseEntity<Void> patchProduct(@PathVariable Long id, @RequestHeader(value = HttpHeaders.IF_MATCH, required = false) String ifMatch,
+                                             @RequestBody Product patch){
+        try{
+            boolean patched = productService.patchProduct(id, patch, parseIfMatch(ifMatch));
+            if(patched){
+                return ResponseEntity.noContent().build();
+            }
             return ResponseEntity.notFound().build();
+        } catch(PreconditionFailedException e){
+            return ResponseEntity.status(HttpStatus.PRECONDITION_FAILED).build();
+        } catch(IllegalArgumentException e){
+            return ResponseEntity.badRequest().build();
+        }
+    }
+
+    // Checkout path: takes stock atomically instead of going through a read-modify-write update
+    @PostMapping("/{id}/stock/reserve")
+    public ResponseEntity<Void> reserveStock(@PathVariable Long id, @RequestParam int quantity){
+        StockReservationResult result;
+        try{
+            result = productService.reserveStock(id, quantity);
+        } catch(IllegalArgumentException e){
+            return ResponseEntity.badRequest().build();
         }
 
-        Product newProduct = productService.updateProduct(id, updatedProduct);
-        return ResponseEntity.ok(newProduct);        
+        switch(result){
+            case RESERVED:
+                return ResponseEntity.noContent().build();
+            case INSUFFICIENT_STOCK:
+                return ResponseEntity.status(HttpStatus.CONFLICT).build();
+            default:
+                return ResponseEntity.notFound().build();
+        }
     }
 
     @DeleteMapping("/{id}")
@@ -67,4 +191,25 @@ public class ProductControllerImpl implements ProductController {
             return ResponseEntity.notFound().build();
         }
     }
+
+    private ProductView withReviews(Product product) {
+        return new ProductView(product, reviewService.getAllReviewsOfProduct(product.getId()));
+    }
+
+    // Accepts "*", strong and weak ETags; anything that is not one of our version ETags can never match
+    private static Long parseIfMatch(String ifMatch) {
+        if(ifMatch == null || ifMatch.isBlank() || ifMatch.trim().equals("*")){
+            return null;
+        }
+        String tag = ifMatch.trim();
+        if(tag.startsWith("W/")){
+            tag = tag.substring(2);
+        }
+        tag = tag.replace("\"", "");
+        try{
+            return Long.valueOf(tag);
+        } catch(NumberFormatException e){
+            throw new PreconditionFailedException("If-Match does not name a product version: " + ifMatch);
+        }
+    }
 }
@@ -1,7 +1,6 @@
 package io.johnathanluong.ecommerce.api.controller;
 
 import java.net.URI;
-import java.util.List;
 
 import org.springframework.http.HttpStatus;
 import org.springframework.http.ResponseEntity;
@@ -11,12 +10,17 @@ import org.springframework.web.bind.annotation.RequestMapping;
 import org.springframework.web.bind.annotation.RestController;
 import org.springframework.web.servlet.support.ServletUriComponentsBuilder;
 
+import io.johnathanluong.ecommerce.api.dto.CursorPage;
+import io.johnathanluong.ecommerce.api.dto.ReviewSort;
+import io.johnathanluong.ecommerce.api.dto.ReviewView;
 import io.johnathanluong.ecommerce.api.entity.Product;
+import io.johnathanluong.ecommerce.api.entity.ProductReviewStats;
 import io.johnathanluong.ecommerce.api.entity.Review;
 import io.johnathanluong.ecommerce.api.entity.User;
 import io.johnathanluong.ecommerce.api.exception.AuthorizationException;
 import io.johnathanluong.ecommerce.api.service.ProductService;
 import io.johnathanluong.ecommerce.api.service.ReviewService;
+import io.johnathanluong.ecommerce.api.service.ReviewStatsService;
 import io.johnathanluong.ecommerce.api.service.UserService;
 
 import org.springframework.web.bind.annotation.DeleteMapping;
@@ -25,6 +29,7 @@ import org.springframework.web.bind.annotation.PathVariable;
 import org.springframework.web.bind.annotation.PostMapping;
 import org.springframework.web.bind.annotation.PutMapping;
 import org.springframework.web.bind.annotation.RequestBody;
+import org.springframework.web.bind.annotation.RequestParam;
 
 
 @RestController
@@ -33,11 +38,14 @@ public class ReviewControllerImpl implements ReviewController {
     private final ReviewService reviewService;
     private final ProductService productService;
     private final UserService userService;
+    private final ReviewStatsService reviewStatsService;
     
-    public ReviewControllerImpl(ReviewService reviewService, ProductService productService, UserService userService){
+    public ReviewControllerImpl(ReviewService reviewService, ProductService productService, UserService userService,
+                                ReviewStatsService reviewStatsService){
         this.reviewService = reviewService;
         this.productService = productService;
         this.userService = userService;
+        this.reviewStatsService = reviewStatsService;
     }
     
     @PostMapping("/products/{productId}/reviews")
@@ -61,16 +69,35 @@ public class ReviewControllerImpl implements ReviewController {
     }
 
     @GetMapping("/products/{productId}/reviews")
-    public ResponseEntity<List<Review>> getAllReviewsOfProduct(@PathVariable Long productId) {
-        Product product = productService.getProductById(productId);
-        if(product == null){
-            return ResponseEntity.notFound().build();
+    public ResponseEntity<CursorPage<ReviewView>> getReviewsOfProduct(@PathVariable Long productId, @RequestParam(required = false) String sort,
+                                                                  @RequestParam(required = false) String after, @RequestParam(required = false) Integer limit) {
+        CursorPage<ReviewView> reviews;
+        try{
+            reviews = reviewService.getReviewsOfProduct(productId, ReviewSort.fromParam(sort), after, limit);
+        } catch(IllegalArgumentException e){
+            return ResponseEntity.badRequest().build();
         }
 
-        List<Review> reviews = reviewService.getAllReviewsOfProduct(product);
+        // Reviews imply the product exists, so the id-only probe is only needed for an empty page
+        if(reviews.getItems().isEmpty() && !productService.productExists(productId)){
+            return ResponseEntity.notFound().build();
+        }
         return ResponseEntity.ok(reviews);
     }
 
+    // A single primary key read of the precomputed counts instead of a scan over the product's reviews
+    @GetMapping("/products/{productId}/reviews/summary")
+    public ResponseEntity<ProductReviewStats> getReviewSummary(@PathVariable Long productId) {
+        ProductReviewStats stats = reviewStatsService.getStats(productId);
+        if(stats == null){
+            if(!productService.productExists(productId)){
+                return ResponseEntity.notFound().build();
+            }
+            stats = new ProductReviewStats(productId);
+        }
+        return ResponseEntity.ok(stats);
+    }
+
     @GetMapping("/reviews/{id}")
     public ResponseEntity<Review> getReviewById(@PathVariable Long id) {
         Review review = reviewService.getReviewById(id);
@@ -88,6 +115,9 @@ public class ReviewControllerImpl implements ReviewController {
         }
         try{    
             Review newReview = reviewService.updateReview(id, updatedReview, user);
+            if(newReview == null){
+                return ResponseEntity.notFound().build();
+            }
             return ResponseEntity.ok(newReview);
         }
         catch(AuthorizationException e){
@@ -107,7 +137,9 @@ public class ReviewControllerImpl implements ReviewController {
         }
 
         try{
-            reviewService.deleteReview(id, user);
+            if(!reviewService.deleteReview(id, user)){
+                return ResponseEntity.notFound().build();
+            }
             return ResponseEntity.noContent().build();
         }
         catch(AuthorizationException e){
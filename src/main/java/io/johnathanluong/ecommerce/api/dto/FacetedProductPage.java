@@ -0,0 +1,35 @@
+package io.johnathanluong.ecommerce.api.dto;
+
+import java.util.List;
+import java.util.Map;
+
+public class FacetedProductPage {
+    private List<ProductSummary> items;
+    private String nextCursor;
+    private long total;
+    private Map<String, Map<String, Long>> facets;
+
+    public FacetedProductPage(List<ProductSummary> items, String nextCursor, long total, Map<String, Map<String, Long>> facets) {
+        this.items = items;
+        this.nextCursor = nextCursor;
+        this.total = total;
+        this.facets = facets;
+    }
+
+    public List<ProductSummary> getItems() {
+        return items;
+    }
+
+    // Null when there are no further pages
+    public String getNextCursor() {
+        return nextCursor;
+    }
+
+    public long getTotal() {
+        return total;
+    }
+
+    public Map<String, Map<String, Long>> getFacets() {
+        return facets;
+    }
+}
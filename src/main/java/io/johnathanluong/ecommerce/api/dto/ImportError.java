@@ -0,0 +1,26 @@
+package io.johnathanluong.ecommerce.api.dto;
+
+public class ImportError {
+    private long row;
+    private String sku;
+    private String message;
+
+    public ImportError(long row, String sku, String message) {
+        this.row = row;
+        this.sku = sku;
+        this.message = message;
+    }
+
+    // 1-based position of the product in the body, not counting a CSV header
+    public long getRow() {
+        return row;
+    }
+
+    public String getSku() {
+        return sku;
+    }
+
+    public String getMessage() {
+        return message;
+    }
+}
@@ -0,0 +1,47 @@
+package io.johnathanluong.ecommerce.api.dto;
+
+import java.util.List;
+
+public class ImportReport {
+    private long received;
+    private long imported;
+    private long failed;
+    private long elapsedMillis;
+    private List<ImportError> errors;
+    private boolean errorsTruncated;
+
+    public ImportReport(long received, long imported, long failed, long elapsedMillis, List<ImportError> errors,
+            boolean errorsTruncated) {
+        this.received = received;
+        this.imported = imported;
+        this.failed = failed;
+        this.elapsedMillis = elapsedMillis;
+        this.errors = errors;
+        this.errorsTruncated = errorsTruncated;
+    }
+
+    public long getReceived() {
+        return received;
+    }
+
+    public long getImported() {
+        return imported;
+    }
+
+    public long getFailed() {
+        return failed;
+    }
+
+    public long getElapsedMillis() {
+        return elapsedMillis;
+    }
+
+    public List<ImportError> getErrors() {
+        return errors;
+    }
+
+    // True when more rows failed than are listed in errors
+    public boolean isErrorsTruncated() {
+        return errorsTruncated;
+    }
+}
@@ -0,0 +1,81 @@
+package io.johnathanluong.ecommerce.api.dto;
+
+import java.math.BigDecimal;
+import java.time.LocalDateTime;
+
+import io.johnathanluong.ecommerce.api.entity.Product;
+
+public class ProductDetail {
+    private Long id;
+    private String name;
+    private String description;
+    private BigDecimal price;
+    private String category;
+    private Integer stock;
+    private LocalDateTime createdAt;
+    private String sku;
+    private String brand;
+
+    public ProductDetail(Long id, String name, String description, BigDecimal price, String category, Integer stock,
+            LocalDateTime createdAt, String sku, String brand) {
+        this.id = id;
+        this.name = name;
+        this.description = description;
+        this.price = price;
+        this.category = category;
+        this.stock = stock;
+        this.createdAt = createdAt;
+        this.sku = sku;
+        this.brand = brand;
+    }
+
+    public static ProductDetail from(Product product) {
+        return new ProductDetail(
+            product.getId(),
+            product.getName(),
+            product.getDescription(),
+            product.getPrice(),
+            product.getCategory(),
+            product.getStock(),
+            product.getCreatedAt(),
+            product.getSku(),
+            product.getBrand()
+        );
+    }
+
+    public Long getId() {
+        return id;
+    }
+
+    public String getName() {
+        return name;
+    }
+
+    public String getDescription() {
+        return description;
+    }
+
+    public BigDecimal getPrice() {
+        return price;
+    }
+
+    public String getCategory() {
+        return category;
+    }
+
+    public Integer getStock() {
+        return stock;
+    }
+
+    public LocalDateTime getCreatedAt() {
+        return createdAt;
+    }
+
+    public String getSku() {
+        return sku;
+    }
+
+    public String getBrand() {
+        return brand;
+    }
+}
@@ -0,0 +1,53 @@
+package io.johnathanluong.ecommerce.api.dto;
+
+import java.math.BigDecimal;
+
+// List view of a product: selected column by column, so neither the description nor the reviews are read
+public class ProductSummary {
+    private Long id;
+    private String name;
+    private BigDecimal price;
+    private String category;
+    private Integer stock;
+    private String sku;
+    private String brand;
+
+    public ProductSummary(Long id, String name, BigDecimal price, String category, Integer stock, String sku,
+            String brand) {
+        this.id = id;
+        this.name = name;
+        this.price = price;
+        this.category = category;
+        this.stock = stock;
+        this.sku = sku;
+        this.brand = brand;
+    }
+
+    public Long getId() {
+        return id;
+    }
+
+    public String getName() {
+        return name;
+    }
+
+    public BigDecimal getPrice() {
+        return price;
+    }
+
+    public String getCategory() {
+        return category;
+    }
+
+    public Integer getStock() {
+        return stock;
+    }
+
+    public String getSku() {
+        return sku;
+    }
+
+    public String getBrand() {
+        return brand;
+    }
+}
@@ -0,0 +1,28 @@
+package io.johnathanluong.ecommerce.api.dto;
+
+import java.util.List;
+
+import com.fasterxml.jackson.annotation.JsonUnwrapped;
+
+import io.johnathanluong.ecommerce.api.entity.Product;
+
+// Single-product responses: the product's own fields plus its reviews. The product may come from the cache
+// detached, so its reviews are read separately as ReviewViews instead of through Product.reviews.
+public class ProductView {
+    @JsonUnwrapped
+    private Product product;
+    private List<ReviewView> reviews;
+
+    public ProductView(Product product, List<ReviewView> reviews) {
+        this.product = product;
+        this.reviews = reviews;
+    }
+
+    public Product getProduct() {
+        return product;
+    }
+
+    public List<ReviewView> getReviews() {
+        return reviews;
+    }
+}
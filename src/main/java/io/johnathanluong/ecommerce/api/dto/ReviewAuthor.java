@@ -0,0 +1,19 @@
+package io.johnathanluong.ecommerce.api.dto;
+
+public class ReviewAuthor {
+    private Long id;
+    private String username;
+
+    public ReviewAuthor(Long id, String username) {
+        this.id = id;
+        this.username = username;
+    }
+
+    public Long getId() {
+        return id;
+    }
+
+    public String getUsername() {
+        return username;
+    }
+}
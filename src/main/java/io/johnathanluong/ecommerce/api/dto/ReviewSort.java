@@ -0,0 +1,22 @@
+package io.johnathanluong.ecommerce.api.dto;
+
+import java.util.Locale;
+
+// Orderings offered by the product review listing; every ordering ends in the review id so pages never overlap
+public enum ReviewSort {
+    // created_at desc, id desc
+    NEWEST,
+    // sentiment asc, then newest first within each sentiment
+    SENTIMENT;
+
+    public static ReviewSort fromParam(String value) {
+        if(value == null || value.isBlank()){
+            return NEWEST;
+        }
+        try{
+            return valueOf(value.trim().toUpperCase(Locale.ROOT));
+        } catch(IllegalArgumentException e){
+            throw new IllegalArgumentException("Unknown review sort: " + value);
+        }
+    }
+}
@@ -0,0 +1,42 @@
+package io.johnathanluong.ecommerce.api.dto;
+
+import java.time.LocalDateTime;
+
+// Read model for review listings. Built straight from a JPQL constructor expression that joins the author,
+// so serializing a page never touches a lazy association.
+public class ReviewView {
+    private Long id;
+    private String reviewText;
+    private String sentiment;
+    private LocalDateTime createdAt;
+    private ReviewAuthor author;
+
+    public ReviewView(Long id, String reviewText, String sentiment, LocalDateTime createdAt,
+            Long authorId, String authorUsername) {
+        this.id = id;
+        this.reviewText = reviewText;
+        this.sentiment = sentiment;
+        this.createdAt = createdAt;
+        this.author = new ReviewAuthor(authorId, authorUsername);
+    }
+
+    public Long getId() {
+        return id;
+    }
+
+    public String getReviewText() {
+        return reviewText;
+    }
+
+    public String getSentiment() {
+        return sentiment;
+    }
+
+    public LocalDateTime getCreatedAt() {
+        return createdAt;
+    }
+
+    public ReviewAuthor getAuthor() {
+        return author;
+    }
+}
@@ -0,0 +1,52 @@
+package io.johnathanluong.ecommerce.api.dto;
+
+import java.math.BigDecimal;
+
+// One row of a bulk upsert. Null price or stock leaves the stored value alone; name is only used for new SKUs.
+public class SkuUpsert {
+    private String sku;
+    private String name;
+    private BigDecimal price;
+    private Integer stock;
+
+    public SkuUpsert(){}
+
+    public SkuUpsert(String sku, String name, BigDecimal price, Integer stock) {
+        this.sku = sku;
+        this.name = name;
+        this.price = price;
+        this.stock = stock;
+    }
+
+    public String getSku() {
+        return sku;
+    }
+
+    public void setSku(String sku) {
+        this.sku = sku;
+    }
+
+    public String getName() {
+        return name;
+    }
+
+    public void setName(String name) {
+        this.name = name;
+    }
+
+    public BigDecimal getPrice() {
+        return price;
+    }
+
+    public void setPrice(BigDecimal price) {
+        this.price = price;
+    }
+
+    public Integer getStock() {
+        return stock;
+    }
+
+    public void setStock(Integer stock) {
+        this.stock = stock;
+    }
+}
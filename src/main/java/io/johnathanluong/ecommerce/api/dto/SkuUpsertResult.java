@@ -0,0 +1,34 @@
+package io.johnathanluong.ecommerce.api.dto;
+
+public class SkuUpsertResult {
+    public enum Outcome {
+        INSERTED,
+        UPDATED,
+        UNCHANGED,
+        // No product has the SKU and the row had no name to create one with
+        UNKNOWN_SKU
+    }
+
+    private final String sku;
+    private final Long productId;
+    private final Outcome outcome;
+
+    public SkuUpsertResult(String sku, Long productId, Outcome outcome) {
+        this.sku = sku;
+        this.productId = productId;
+        this.outcome = outcome;
+    }
+
+    public String getSku() {
+        return sku;
+    }
+
+    // Null unless the row was inserted or updated
+    public Long getProductId() {
+        return productId;
+    }
+
+    public Outcome getOutcome() {
+        return outcome;
+    }
+}
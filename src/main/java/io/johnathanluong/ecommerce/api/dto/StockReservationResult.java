@@ -0,0 +1,7 @@
+package io.johnathanluong.ecommerce.api.dto;
+
+public enum StockReservationResult {
+    RESERVED,
+    INSUFFICIENT_STOCK,
+    NOT_FOUND
+}
@@ -0,0 +1,64 @@
+package io.johnathanluong.ecommerce.api.dto;
+
+import java.util.List;
+
+public class UpsertReport {
+    private long received;
+    private long inserted;
+    private long updated;
+    private long unchanged;
+    private long rejected;
+    private long duplicates;
+    private long elapsedMillis;
+    private List<ImportError> errors;
+
+    public UpsertReport(long received, long inserted, long updated, long unchanged, long rejected, long duplicates,
+            long elapsedMillis, List<ImportError> errors) {
+        this.received = received;
+        this.inserted = inserted;
+        this.updated = updated;
+        this.unchanged = unchanged;
+        this.rejected = rejected;
+        this.duplicates = duplicates;
+        this.elapsedMillis = elapsedMillis;
+        this.errors = errors;
+    }
+
+    public long getReceived() {
+        return received;
+    }
+
+    public long getInserted() {
+        return inserted;
+    }
+
+    public long getUpdated() {
+        return updated;
+    }
+
+    // Rows whose price and stock already matched; nothing was written for them
+    public long getUnchanged() {
+        return unchanged;
+    }
+
+    public long getRejected() {
+        return rejected;
+    }
+
+    // Earlier rows for a SKU that appears again later in the same request; the last one wins
+    public long getDuplicates() {
+        return duplicates;
+    }
+
+    public long getElapsedMillis() {
+        return elapsedMillis;
+    }
+
+    public long getRowsPerSecond() {
+        return elapsedMillis == 0 ? received * 1000 : received * 1000 / elapsedMillis;
+    }
+
+    public List<ImportError> getErrors() {
+        return errors;
+    }
+}
@@ -5,19 +5,31 @@ import java.time.LocalDateTime;
 import java.util.HashSet;
 import java.util.Set;
 
-import com.fasterxml.jackson.annotation.JsonManagedReference;
+import org.hibernate.annotations.DynamicUpdate;
+
+import com.fasterxml.jackson.annotation.JsonIgnore;
+import com.fasterxml.jackson.annotation.JsonProperty;
 
 import jakarta.persistence.*;
 
+// Updates only write the columns that changed
 @Entity
+@DynamicUpdate
 @Table(name = "products")
 public class Product {    
+    public static final String ID_SEQUENCE = "products_seq";
+    public static final int ID_ALLOCATION_SIZE = 50;
+
+    // A pooled sequence instead of IDENTITY: ids are known before the INSERT, so Hibernate can batch inserts
+    // and only hits the sequence once per ID_ALLOCATION_SIZE products
     @Id
-    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    @GeneratedValue(strategy = GenerationType.SEQUENCE, generator = ID_SEQUENCE)
+    @SequenceGenerator(name = ID_SEQUENCE, sequenceName = ID_SEQUENCE, allocationSize = ID_ALLOCATION_SIZE)
     private Long id;
 
+    // Cached products are detached, so product responses carry their reviews through ProductView instead
     @OneToMany(mappedBy = "product", cascade = CascadeType.ALL, orphanRemoval = true, fetch = FetchType.LAZY)
-    @JsonManagedReference
+    @JsonIgnore
     Set<Review> reviews = new HashSet<>();
     
     @Column(nullable = false, length = 255)
@@ -44,6 +56,13 @@ public class Product {
     @Column(length = 255)
     private String brand;
 
+    // Bumped on every write, including atomic stock updates; exposed to clients as the ETag.
+    // The column default backfills rows created before versioning.
+    @Version
+    @Column(nullable = false, columnDefinition = "bigint default 0")
+    @JsonProperty(access = JsonProperty.Access.READ_ONLY)
+    private long version;
+
 
     public Product(){
 
@@ -167,5 +186,13 @@ public class Product {
 
     public void setReviews(Set<Review> reviews) {
         this.reviews = reviews;
-    }    
+    }
+
+    public long getVersion() {
+        return version;
+    }
+
+    public void setVersion(long version) {
+        this.version = version;
+    }
 }
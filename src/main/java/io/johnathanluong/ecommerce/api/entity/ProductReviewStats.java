@@ -0,0 +1,110 @@
+package io.johnathanluong.ecommerce.api.entity;
+
+import java.time.LocalDateTime;
+
+import jakarta.persistence.Column;
+import jakarta.persistence.Entity;
+import jakarta.persistence.Id;
+import jakarta.persistence.Table;
+
+// Running review totals for one product, kept in step with the reviews table by ReviewStatsService.
+// Reviews that are still being scored (PENDING), are waiting on the sentiment backend (UNKNOWN) or could not be
+// scored at all (FAILED) count as unscored.
+@Entity
+@Table(name = "product_review_stats")
+public class ProductReviewStats {
+    @Id
+    @Column(name = "product_id")
+    private Long productId;
+
+    @Column(name = "positive_count", nullable = false)
+    private long positiveCount;
+
+    @Column(name = "negative_count", nullable = false)
+    private long negativeCount;
+
+    @Column(name = "neutral_count", nullable = false)
+    private long neutralCount;
+
+    @Column(name = "mixed_count", nullable = false)
+    private long mixedCount;
+
+    @Column(name = "unscored_count", nullable = false)
+    private long unscoredCount;
+
+    @Column(name = "total_count", nullable = false)
+    private long totalCount;
+
+    @Column(name = "last_review_at")
+    private LocalDateTime lastReviewAt;
+
+    public ProductReviewStats(){}
+
+    public ProductReviewStats(Long productId) {
+        this.productId = productId;
+    }
+
+    public Long getProductId() {
+        return productId;
+    }
+
+    public void setProductId(Long productId) {
+        this.productId = productId;
+    }
+
+    public long getPositiveCount() {
+        return positiveCount;
+    }
+
+    public void setPositiveCount(long positiveCount) {
+        this.positiveCount = positiveCount;
+    }
+
+    public long getNegativeCount() {
+        return negativeCount;
+    }
+
+    public void setNegativeCount(long negativeCount) {
+        this.negativeCount = negativeCount;
+    }
+
+    public long getNeutralCount() {
+        return neutralCount;
+    }
+
+    public void setNeutralCount(long neutralCount) {
+        this.neutralCount = neutralCount;
+    }
+
+    public long getMixedCount() {
+        return mixedCount;
+    }
+
+    public void setMixedCount(long mixedCount) {
+        this.mixedCount = mixedCount;
+    }
+
+    public long getUnscoredCount() {
+        return unscoredCount;
+    }
+
+    public void setUnscoredCount(long unscoredCount) {
+        this.unscoredCount = unscoredCount;
+    }
+
+    public long getTotalCount() {
+        return totalCount;
+    }
+
+    public void setTotalCount(long totalCount) {
+        this.totalCount = totalCount;
+    }
+
+    public LocalDateTime getLastReviewAt() {
+        return lastReviewAt;
+    }
+
+    public void setLastReviewAt(LocalDateTime lastReviewAt) {
+        this.lastReviewAt = lastReviewAt;
+    }
+}
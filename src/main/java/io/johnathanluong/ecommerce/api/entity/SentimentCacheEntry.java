@@ -0,0 +1,55 @@
+package io.johnathanluong.ecommerce.api.entity;
+
+import java.time.LocalDateTime;
+
+import jakarta.persistence.Column;
+import jakarta.persistence.Entity;
+import jakarta.persistence.Id;
+import jakarta.persistence.Table;
+
+// Sentiment previously detected for a review text, keyed by the hash of the normalized text
+@Entity
+@Table(name = "sentiment_cache")
+public class SentimentCacheEntry {
+    @Id
+    @Column(name = "text_hash", length = 64)
+    private String textHash;
+
+    @Column(length = 16, nullable = false)
+    private String sentiment;
+
+    @Column(name = "created_at")
+    private LocalDateTime createdAt;
+
+    public SentimentCacheEntry(){}
+
+    public SentimentCacheEntry(String textHash, String sentiment, LocalDateTime createdAt) {
+        this.textHash = textHash;
+        this.sentiment = sentiment;
+        this.createdAt = createdAt;
+    }
+
+    public String getTextHash() {
+        return textHash;
+    }
+
+    public void setTextHash(String textHash) {
+        this.textHash = textHash;
+    }
+
+    public String getSentiment() {
+        return sentiment;
+    }
+
+    public void setSentiment(String sentiment) {
+        this.sentiment = sentiment;
+    }
+
+    public LocalDateTime getCreatedAt() {
+        return createdAt;
+    }
+
+    public void setCreatedAt(LocalDateTime createdAt) {
+        this.createdAt = createdAt;
+    }
+}
@@ -0,0 +1,14 @@
+package io.johnathanluong.ecommerce.api.event;
+
+// Published by ProductService after a product is deleted
+public class ProductDeletedEvent {
+    private final Long productId;
+
+    public ProductDeletedEvent(Long productId) {
+        this.productId = productId;
+    }
+
+    public Long getProductId() {
+        return productId;
+    }
+}
@@ -0,0 +1,22 @@
+package io.johnathanluong.ecommerce.api.event;
+
+import io.johnathanluong.ecommerce.api.entity.Product;
+
+// Published by ProductService after a partial update; only the non-null fields of the patch were written
+public class ProductPatchedEvent {
+    private final Long productId;
+    private final Product patch;
+
+    public ProductPatchedEvent(Long productId, Product patch) {
+        this.productId = productId;
+        this.patch = patch;
+    }
+
+    public Long getProductId() {
+        return productId;
+    }
+
+    public Product getPatch() {
+        return patch;
+    }
+}
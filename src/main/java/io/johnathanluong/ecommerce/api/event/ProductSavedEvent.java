@@ -0,0 +1,16 @@
+package io.johnathanluong.ecommerce.api.event;
+
+import io.johnathanluong.ecommerce.api.entity.Product;
+
+// Published by ProductService after a product is created or updated
+public class ProductSavedEvent {
+    private final Product product;
+
+    public ProductSavedEvent(Product product) {
+        this.product = product;
+    }
+
+    public Product getProduct() {
+        return product;
+    }
+}
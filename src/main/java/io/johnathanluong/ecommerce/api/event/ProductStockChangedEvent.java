@@ -0,0 +1,20 @@
+package io.johnathanluong.ecommerce.api.event;
+
+// Published by ProductService after an atomic stock adjustment; carries the delta because the new level is never read back
+public class ProductStockChangedEvent {
+    private final Long productId;
+    private final int delta;
+
+    public ProductStockChangedEvent(Long productId, int delta) {
+        this.productId = productId;
+        this.delta = delta;
+    }
+
+    public Long getProductId() {
+        return productId;
+    }
+
+    public int getDelta() {
+        return delta;
+    }
+}
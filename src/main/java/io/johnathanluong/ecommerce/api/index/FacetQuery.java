@@ -0,0 +1,42 @@
+package io.johnathanluong.ecommerce.api.index;
+
+import java.math.BigDecimal;
+import java.util.Collections;
+import java.util.Set;
+
+// Filters for a faceted product query. Values within one facet are ORed, facets are ANDed; null or empty means no filter
+public class FacetQuery {
+    private final Set<String> categories;
+    private final Set<String> brands;
+    private final BigDecimal minPrice;
+    private final BigDecimal maxPrice;
+    private final Boolean inStock;
+
+    public FacetQuery(Set<String> categories, Set<String> brands, BigDecimal minPrice, BigDecimal maxPrice, Boolean inStock) {
+        this.categories = categories == null ? Collections.emptySet() : categories;
+        this.brands = brands == null ? Collections.emptySet() : brands;
+        this.minPrice = minPrice;
+        this.maxPrice = maxPrice;
+        this.inStock = inStock;
+    }
+
+    public Set<String> getCategories() {
+        return categories;
+    }
+
+    public Set<String> getBrands() {
+        return brands;
+    }
+
+    public BigDecimal getMinPrice() {
+        return minPrice;
+    }
+
+    public BigDecimal getMaxPrice() {
+        return maxPrice;
+    }
+
+    public Boolean getInStock() {
+        return inStock;
+    }
+}
@@ -0,0 +1,37 @@
+package io.johnathanluong.ecommerce.api.index;
+
+import java.util.List;
+import java.util.Map;
+
+public class FacetResult {
+    private final List<Long> productIds;
+    private final boolean hasMore;
+    private final long total;
+    private final Map<String, Map<String, Long>> facets;
+
+    public FacetResult(List<Long> productIds, boolean hasMore, long total, Map<String, Map<String, Long>> facets) {
+        this.productIds = productIds;
+        this.hasMore = hasMore;
+        this.total = total;
+        this.facets = facets;
+    }
+
+    // One page of matches in index order
+    public List<Long> getProductIds() {
+        return productIds;
+    }
+
+    public boolean hasMore() {
+        return hasMore;
+    }
+
+    // Number of products matching every filter
+    public long getTotal() {
+        return total;
+    }
+
+    // Facet name -> value -> count of matches if that facet's own filter were left out
+    public Map<String, Map<String, Long>> getFacets() {
+        return facets;
+    }
+}
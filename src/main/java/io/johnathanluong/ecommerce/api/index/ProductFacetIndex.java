@@ -0,0 +1,435 @@
+package io.johnathanluong.ecommerce.api.index;
+
+import java.math.BigDecimal;
+import java.math.RoundingMode;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.SmartInitializingSingleton;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.domain.Limit;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.event.TransactionalEventListener;
+
+import io.johnathanluong.ecommerce.api.dto.ProductSummary;
+import io.johnathanluong.ecommerce.api.entity.Product;
+import io.johnathanluong.ecommerce.api.event.ProductDeletedEvent;
+import io.johnathanluong.ecommerce.api.event.ProductPatchedEvent;
+import io.johnathanluong.ecommerce.api.event.ProductSavedEvent;
+import io.johnathanluong.ecommerce.api.event.ProductStockChangedEvent;
+import io.johnathanluong.ecommerce.api.repository.ProductRepository;
+
+// Bitmap indexes over category, brand, price bucket and stock so a filtered listing and its facet counts are
+// answered from memory. Each product gets a stable document number and every facet value keeps a BitSet of the
+// documents that have it; a filter is a few ANDs/ORs over those sets and a count is the cardinality of a value's
+// set ANDed with the scope. The AND goes into a per-thread scratch BitSet, so counting allocates nothing.
+//
+// Counts are disjunctive: each facet is counted against every filter except its own, so selecting one brand still
+// reports how many matches the other brands would have.
+@Component
+public class ProductFacetIndex implements SmartInitializingSingleton {
+    private static final Logger logger = LoggerFactory.getLogger(ProductFacetIndex.class);
+
+    public static final String CATEGORY = "category";
+    public static final String BRAND = "brand";
+    public static final String PRICE = "price";
+    public static final String IN_STOCK = "inStock";
+
+    private static final int NO_BUCKET = -1;
+
+    private final ProductRepository productRepository;
+    private final int rebuildBatchSize;
+    // Upper bounds of the price buckets in cents; the last bucket is open ended
+    private final long[] priceBounds;
+    private final String[] priceLabels;
+    private final ReadWriteLock lock = new ReentrantReadWriteLock();
+    private final ThreadLocal<BitSet> scratch = ThreadLocal.withInitial(BitSet::new);
+
+    // Everything below is guarded by lock. Document numbers are never reused, so deleted products keep theirs
+    // and a cursor naming them stays valid.
+    private final Map<Long, Integer> docsByProductId = new HashMap<>();
+    private final Map<String, BitSet> categories = new HashMap<>();
+    private final Map<String, BitSet> brands = new HashMap<>();
+    private final BitSet[] priceBuckets;
+    private final BitSet inStock = new BitSet();
+    private final BitSet live = new BitSet();
+    private long[] productIds = new long[1024];
+    private long[] pricesInCents = new long[1024];
+    private String[] docCategories = new String[1024];
+    private String[] docBrands = new String[1024];
+    private int[] docPriceBuckets = new int[1024];
+    private int[] stocks = new int[1024];
+    private int nextDoc;
+
+    public ProductFacetIndex(ProductRepository productRepository,
+                             @Value("${app.facets.rebuild-batch-size:1000}") int rebuildBatchSize,
+                             @Value("${app.facets.price-buckets:25,50,100,250,500}") int[] priceBuckets) {
+        this.productRepository = productRepository;
+        this.rebuildBatchSize = rebuildBatchSize;
+
+        int[] bounds = priceBuckets.clone();
+        Arrays.sort(bounds);
+        this.priceBounds = new long[bounds.length];
+        this.priceLabels = new String[bounds.length + 1];
+        this.priceBuckets = new BitSet[bounds.length + 1];
+        int lower = 0;
+        for(int i = 0; i < bounds.length; i++){
+            this.priceBounds[i] = bounds[i] * 100L;
+            this.priceLabels[i] = lower + "-" + bounds[i];
+            lower = bounds[i];
+        }
+        this.priceLabels[bounds.length] = lower + "+";
+        for(int i = 0; i < this.priceBuckets.length; i++){
+            this.priceBuckets[i] = new BitSet();
+        }
+    }
+
+    // Runs once every bean exists but before the web server starts, so no stock or product event can
+    // interleave with the scan and be overwritten by a row it read earlier
+    @Override
+    public void afterSingletonsInstantiated() {
+        rebuild();
+    }
+
+    public void rebuild() {
+        long start = System.nanoTime();
+        long afterId = 0L;
+        int indexed = 0;
+        while(true){
+            List<ProductSummary> batch = productRepository.findSummariesAfter(afterId, Limit.of(rebuildBatchSize));
+            for(ProductSummary product : batch){
+                index(product.getId(), product.getCategory(), product.getBrand(), product.getPrice(), product.getStock());
+            }
+            indexed += batch.size();
+            if(batch.size() < rebuildBatchSize){
+                break;
+            }
+            afterId = batch.get(batch.size() - 1).getId();
+        }
+        logger.info("Indexed {} products for faceting in {} ms", indexed, (System.nanoTime() - start) / 1_000_000);
+    }
+
+    @TransactionalEventListener(fallbackExecution = true)
+    public void onProductSaved(ProductSavedEvent event) {
+        Product product = event.getProduct();
+        index(product.getId(), product.getCategory(), product.getBrand(), product.getPrice(), product.getStock());
+    }
+
+    @TransactionalEventListener(fallbackExecution = true)
+    public void onProductPatched(ProductPatchedEvent event) {
+        Product patch = event.getPatch();
+        patch(event.getProductId(), patch.getCategory(), patch.getBrand(), patch.getPrice(), patch.getStock());
+    }
+
+    @TransactionalEventListener(fallbackExecution = true)
+    public void onStockChanged(ProductStockChangedEvent event) {
+        adjustStock(event.getProductId(), event.getDelta());
+    }
+
+    @TransactionalEventListener(fallbackExecution = true)
+    public void onProductDeleted(ProductDeletedEvent event) {
+        remove(event.getProductId());
+    }
+
+    public void index(Long productId, String category, String brand, BigDecimal price, Integer stock) {
+        lock.writeLock().lock();
+        try{
+            indexDoc(productId, category, brand, price, stock);
+        } finally{
+            lock.writeLock().unlock();
+        }
+    }
+
+    // Null arguments keep the indexed value; everything the facets need is held here, so no reload is required
+    public void patch(Long productId, String category, String brand, BigDecimal price, Integer stock) {
+        lock.writeLock().lock();
+        try{
+            Integer doc = docsByProductId.get(productId);
+            if(doc == null || !live.get(doc)){
+                return;
+            }
+            indexDoc(productId,
+                category != null ? category : docCategories[doc],
+                brand != null ? brand : docBrands[doc],
+                price != null ? price : (pricesInCents[doc] < 0 ? null : BigDecimal.valueOf(pricesInCents[doc], 2)),
+                stock != null ? stock : Integer.valueOf(stocks[doc]));
+        } finally{
+            lock.writeLock().unlock();
+        }
+    }
+
+    // Stock adjustments are atomic deltas in the database, so applying the same deltas here keeps the level exact
+    public void adjustStock(Long productId, int delta) {
+        lock.writeLock().lock();
+        try{
+            Integer doc = docsByProductId.get(productId);
+            if(doc != null && live.get(doc)){
+                stocks[doc] += delta;
+                inStock.set(doc, stocks[doc] > 0);
+            }
+        } finally{
+            lock.writeLock().unlock();
+        }
+    }
+
+    public void remove(Long productId) {
+        lock.writeLock().lock();
+        try{
+            Integer doc = docsByProductId.get(productId);
+            if(doc != null && live.get(doc)){
+                clearDoc(doc);
+            }
+        } finally{
+            lock.writeLock().unlock();
+        }
+    }
+
+    // Matches come back in index order, which is id order for everything indexed at startup and insertion order after
+    public FacetResult search(FacetQuery query, Long afterProductId, int limit) {
+        lock.readLock().lock();
+        try{
+            int startDoc = 0;
+            if(afterProductId != null){
+                Integer afterDoc = docsByProductId.get(afterProductId);
+                if(afterDoc == null){
+                    throw new IllegalArgumentException("Unknown cursor position: " + afterProductId);
+                }
+                startDoc = afterDoc + 1;
+            }
+
+            BitSet categoryFilter = union(categories, query.getCategories());
+            BitSet brandFilter = union(brands, query.getBrands());
+            BitSet priceFilter = priceFilter(query.getMinPrice(), query.getMaxPrice());
+            Boolean stockFilter = query.getInStock();
+
+            BitSet matches = intersect(categoryFilter, brandFilter, priceFilter, stockFilter);
+            List<Long> page = new ArrayList<>(limit);
+            int doc = matches.nextSetBit(startDoc);
+            while(doc >= 0 && page.size() < limit){
+                page.add(productIds[doc]);
+                doc = matches.nextSetBit(doc + 1);
+            }
+
+            // A facet without a filter of its own is counted over the matches themselves
+            BitSet work = scratch.get();
+            Map<String, Map<String, Long>> facets = new LinkedHashMap<>();
+            facets.put(CATEGORY, countValues(categories,
+                categoryFilter == null ? matches : intersect(null, brandFilter, priceFilter, stockFilter), work));
+            facets.put(BRAND, countValues(brands,
+                brandFilter == null ? matches : intersect(categoryFilter, null, priceFilter, stockFilter), work));
+            facets.put(PRICE, countPrices(
+                priceFilter == null ? matches : intersect(categoryFilter, brandFilter, null, stockFilter), work));
+            facets.put(IN_STOCK, countStock(
+                stockFilter == null ? matches : intersect(categoryFilter, brandFilter, priceFilter, null), work));
+
+            return new FacetResult(page, doc >= 0, matches.cardinality(), facets);
+        } finally{
+            lock.readLock().unlock();
+        }
+    }
+
+    public int size() {
+        lock.readLock().lock();
+        try{
+            return live.cardinality();
+        } finally{
+            lock.readLock().unlock();
+        }
+    }
+
+    private void indexDoc(Long productId, String category, String brand, BigDecimal price, Integer stock) {
+        Integer existing = docsByProductId.get(productId);
+        int doc;
+        if(existing != null){
+            doc = existing;
+            clearDoc(doc);
+        }
+        else{
+            doc = nextDoc++;
+            if(doc == productIds.length){
+                productIds = Arrays.copyOf(productIds, doc * 2);
+                pricesInCents = Arrays.copyOf(pricesInCents, doc * 2);
+                docCategories = Arrays.copyOf(docCategories, doc * 2);
+                docBrands = Arrays.copyOf(docBrands, doc * 2);
+                docPriceBuckets = Arrays.copyOf(docPriceBuckets, doc * 2);
+                stocks = Arrays.copyOf(stocks, doc * 2);
+            }
+            productIds[doc] = productId;
+            docsByProductId.put(productId, doc);
+        }
+
+        live.set(doc);
+        docCategories[doc] = category;
+        docBrands[doc] = brand;
+        if(category != null){
+            categories.computeIfAbsent(category, value -> new BitSet()).set(doc);
+        }
+        if(brand != null){
+            brands.computeIfAbsent(brand, value -> new BitSet()).set(doc);
+        }
+        pricesInCents[doc] = price == null ? -1 : toCents(price);
+        docPriceBuckets[doc] = bucketOf(pricesInCents[doc]);
+        if(docPriceBuckets[doc] != NO_BUCKET){
+            priceBuckets[docPriceBuckets[doc]].set(doc);
+        }
+        stocks[doc] = stock == null ? 0 : stock;
+        inStock.set(doc, stocks[doc] > 0);
+    }
+
+    private void clearDoc(int doc) {
+        live.clear(doc);
+        clearValue(categories, docCategories[doc], doc);
+        clearValue(brands, docBrands[doc], doc);
+        if(docPriceBuckets[doc] != NO_BUCKET){
+            priceBuckets[docPriceBuckets[doc]].clear(doc);
+        }
+        inStock.clear(doc);
+    }
+
+    private static void clearValue(Map<String, BitSet> values, String value, int doc) {
+        if(value == null){
+            return;
+        }
+        BitSet docs = values.get(value);
+        if(docs != null){
+            docs.clear(doc);
+            if(docs.isEmpty()){
+                values.remove(value);
+            }
+        }
+    }
+
+    private static long toCents(BigDecimal price) {
+        return price.setScale(2, RoundingMode.HALF_UP).unscaledValue().longValue();
+    }
+
+    private int bucketOf(long cents) {
+        if(cents < 0){
+            return NO_BUCKET;
+        }
+        for(int i = 0; i < priceBounds.length; i++){
+            if(cents < priceBounds[i]){
+                return i;
+            }
+        }
+        return priceBounds.length;
+    }
+
+    // Null when the facet is not filtered
+    private static BitSet union(Map<String, BitSet> values, Set<String> selected) {
+        if(selected.isEmpty()){
+            return null;
+        }
+        BitSet result = new BitSet();
+        for(String value : selected){
+            BitSet docs = values.get(value);
+            if(docs != null){
+                result.or(docs);
+            }
+        }
+        return result;
+    }
+
+    // Whole buckets inside the range are taken as is; only the buckets straddling a bound check individual prices
+    private BitSet priceFilter(BigDecimal minPrice, BigDecimal maxPrice) {
+        if(minPrice == null && maxPrice == null){
+            return null;
+        }
+        long min = minPrice == null ? 0 : toCents(minPrice);
+        long max = maxPrice == null ? Long.MAX_VALUE : toCents(maxPrice);
+        BitSet result = new BitSet();
+        for(int bucket = 0; bucket < priceBuckets.length; bucket++){
+            long bucketMin = bucket == 0 ? 0 : priceBounds[bucket - 1];
+            long bucketMax = bucket == priceBounds.length ? Long.MAX_VALUE : priceBounds[bucket] - 1;
+            if(bucketMax < min || bucketMin > max){
+                continue;
+            }
+            if(bucketMin >= min && bucketMax <= max){
+                result.or(priceBuckets[bucket]);
+                continue;
+            }
+            BitSet docs = priceBuckets[bucket];
+            for(int doc = docs.nextSetBit(0); doc >= 0; doc = docs.nextSetBit(doc + 1)){
+                if(pricesInCents[doc] >= min && pricesInCents[doc] <= max){
+                    result.set(doc);
+                }
+            }
+        }
+        return result;
+    }
+
+    // Copies live once; a null filter leaves its facet unrestricted
+    private BitSet intersect(BitSet categoryFilter, BitSet brandFilter, BitSet priceFilter, Boolean stockFilter) {
+        BitSet result = (BitSet) live.clone();
+        if(categoryFilter != null){
+            result.and(categoryFilter);
+        }
+        if(brandFilter != null){
+            result.and(brandFilter);
+        }
+        if(priceFilter != null){
+            result.and(priceFilter);
+        }
+        if(stockFilter != null){
+            if(stockFilter){
+                result.and(inStock);
+            }
+            else{
+                result.andNot(inStock);
+            }
+        }
+        return result;
+    }
+
+    // Most common values first, values with no matches left out
+    private static Map<String, Long> countValues(Map<String, BitSet> values, BitSet scope, BitSet work) {
+        List<Map.Entry<String, Long>> counts = new ArrayList<>();
+        for(Map.Entry<String, BitSet> entry : values.entrySet()){
+            long count = intersectionSize(entry.getValue(), scope, work);
+            if(count > 0){
+                counts.add(Map.entry(entry.getKey(), count));
+            }
+        }
+        counts.sort(Map.Entry.<String, Long>comparingByValue(Comparator.reverseOrder()).thenComparing(Map.Entry.comparingByKey()));
+
+        Map<String, Long> result = new LinkedHashMap<>();
+        for(Map.Entry<String, Long> count : counts){
+            result.put(count.getKey(), count.getValue());
+        }
+        return result;
+    }
+
+    private Map<String, Long> countPrices(BitSet scope, BitSet work) {
+        Map<String, Long> result = new LinkedHashMap<>();
+        for(int bucket = 0; bucket < priceBuckets.length; bucket++){
+            result.put(priceLabels[bucket], intersectionSize(priceBuckets[bucket], scope, work));
+        }
+        return result;
+    }
+
+    private Map<String, Long> countStock(BitSet scope, BitSet work) {
+        long available = intersectionSize(inStock, scope, work);
+        Map<String, Long> result = new LinkedHashMap<>();
+        result.put("true", available);
+        result.put("false", scope.cardinality() - available);
+        return result;
+    }
+
+    private static long intersectionSize(BitSet values, BitSet scope, BitSet work) {
+        work.clear();
+        work.or(values);
+        work.and(scope);
+        return work.cardinality();
+    }
+}
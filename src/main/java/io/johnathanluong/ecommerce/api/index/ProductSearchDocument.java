@@ -0,0 +1,38 @@
+package io.johnathanluong.ecommerce.api.index;
+
+// The searchable columns of a product, selected without loading the entity
+public class ProductSearchDocument {
+    private final Long id;
+    private final String name;
+    private final String brand;
+    private final String category;
+    private final String description;
+
+    public ProductSearchDocument(Long id, String name, String brand, String category, String description) {
+        this.id = id;
+        this.name = name;
+        this.brand = brand;
+        this.category = category;
+        this.description = description;
+    }
+
+    public Long getId() {
+        return id;
+    }
+
+    public String getName() {
+        return name;
+    }
+
+    public String getBrand() {
+        return brand;
+    }
+
+    public String getCategory() {
+        return category;
+    }
+
+    public String getDescription() {
+        return description;
+    }
+}
@@ -0,0 +1,548 @@
+package io.johnathanluong.ecommerce.api.index;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.SmartInitializingSingleton;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.domain.Limit;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.event.TransactionalEventListener;
+
+import io.johnathanluong.ecommerce.api.entity.Product;
+import io.johnathanluong.ecommerce.api.event.ProductDeletedEvent;
+import io.johnathanluong.ecommerce.api.event.ProductPatchedEvent;
+import io.johnathanluong.ecommerce.api.event.ProductSavedEvent;
+import io.johnathanluong.ecommerce.api.repository.ProductRepository;
+
+// In-process full-text index over product name, brand, category and description. Built from the database
+// before the web server starts and kept current from product events.
+//
+// Products get dense internal document numbers and each term keeps its postings as parallel int arrays sorted
+// by document number, so a query is a handful of array scans and binary searches. Queries match every term
+// (the last one also as a prefix, for type-ahead) and rank with BM25 over field-weighted term frequencies.
+// Updated and deleted products leave dead postings behind until the index is compacted, but stop counting
+// towards their terms' document frequencies straight away.
+@Component
+public class ProductSearchIndex implements SmartInitializingSingleton {
+    private static final Logger logger = LoggerFactory.getLogger(ProductSearchIndex.class);
+
+    private static final float K1 = 1.2f;
+    private static final float B = 0.75f;
+    private static final int NAME_WEIGHT = 3;
+    private static final int BRAND_WEIGHT = 2;
+    private static final int CATEGORY_WEIGHT = 2;
+    private static final int DESCRIPTION_WEIGHT = 1;
+    // Prefix expansions rank below whole-word matches
+    private static final float PREFIX_WEIGHT = 0.5f;
+    private static final int MIN_PREFIX_LENGTH = 2;
+    private static final int MAX_PREFIX_EXPANSIONS = 64;
+    private static final int MIN_DEAD_DOCS_TO_COMPACT = 1000;
+    private static final Set<String> STOP_WORDS = Set.of("a", "an", "and", "the", "of", "for", "with", "in", "on", "to", "by");
+
+    private final ProductRepository productRepository;
+    private final int rebuildBatchSize;
+    private final ReadWriteLock lock = new ReentrantReadWriteLock();
+
+    // Everything below is guarded by lock
+    private final TreeMap<String, Postings> postings = new TreeMap<>();
+    private final Map<Long, Integer> docsByProductId = new HashMap<>();
+    private final BitSet deadDocs = new BitSet();
+    private long[] productIds = new long[1024];
+    private int[] docLengths = new int[1024];
+    // The postings lists each document was added to, so removing it can update their live counts
+    private Postings[][] docTerms = new Postings[1024][];
+    private int nextDoc;
+    private int liveDocCount;
+    private int deadDocCount;
+    private long totalLength;
+
+    public ProductSearchIndex(ProductRepository productRepository,
+                              @Value("${app.search.rebuild-batch-size:1000}") int rebuildBatchSize) {
+        this.productRepository = productRepository;
+        this.rebuildBatchSize = rebuildBatchSize;
+    }
+
+    // Before traffic, so no product event can be overwritten by an older row the scan reads afterwards
+    @Override
+    public void afterSingletonsInstantiated() {
+        rebuild();
+    }
+
+    // Keyset scan over the catalog
+    public void rebuild() {
+        long start = System.nanoTime();
+        long afterId = 0L;
+        int indexed = 0;
+        while(true){
+            List<ProductSearchDocument> batch = productRepository.findSearchDocumentsAfter(afterId, Limit.of(rebuildBatchSize));
+            for(ProductSearchDocument document : batch){
+                index(document.getId(), document.getName(), document.getBrand(), document.getCategory(), document.getDescription());
+            }
+            indexed += batch.size();
+            if(batch.size() < rebuildBatchSize){
+                break;
+            }
+            afterId = batch.get(batch.size() - 1).getId();
+        }
+        logger.info("Indexed {} products for search in {} ms", indexed, (System.nanoTime() - start) / 1_000_000);
+    }
+
+    @TransactionalEventListener(fallbackExecution = true)
+    public void onProductSaved(ProductSavedEvent event) {
+        Product product = event.getProduct();
+        index(product.getId(), product.getName(), product.getBrand(), product.getCategory(), product.getDescription());
+    }
+
+    // A patch only carries the fields it changed, so a text change re-reads the searchable columns
+    @TransactionalEventListener(fallbackExecution = true)
+    public void onProductPatched(ProductPatchedEvent event) {
+        Product patch = event.getPatch();
+        if(patch.getName() == null && patch.getBrand() == null && patch.getCategory() == null && patch.getDescription() == null){
+            return;
+        }
+        productRepository.findSearchDocumentById(event.getProductId()).ifPresent(document ->
+            index(document.getId(), document.getName(), document.getBrand(), document.getCategory(), document.getDescription()));
+    }
+
+    @TransactionalEventListener(fallbackExecution = true)
+    public void onProductDeleted(ProductDeletedEvent event) {
+        remove(event.getProductId());
+    }
+
+    // Adds the product, replacing whatever was indexed for it before
+    public void index(Long productId, String name, String brand, String category, String description) {
+        Map<String, Integer> frequencies = new HashMap<>();
+        int length = addTokens(frequencies, name, NAME_WEIGHT)
+            + addTokens(frequencies, brand, BRAND_WEIGHT)
+            + addTokens(frequencies, category, CATEGORY_WEIGHT)
+            + addTokens(frequencies, description, DESCRIPTION_WEIGHT);
+
+        lock.writeLock().lock();
+        try{
+            removeDoc(productId);
+            if(frequencies.isEmpty()){
+                return;
+            }
+
+            int doc = nextDoc++;
+            if(doc == productIds.length){
+                productIds = Arrays.copyOf(productIds, doc * 2);
+                docLengths = Arrays.copyOf(docLengths, doc * 2);
+                docTerms = Arrays.copyOf(docTerms, doc * 2);
+            }
+            productIds[doc] = productId;
+            docLengths[doc] = length;
+            docsByProductId.put(productId, doc);
+            liveDocCount++;
+            totalLength += length;
+            Postings[] terms = new Postings[frequencies.size()];
+            int t = 0;
+            for(Map.Entry<String, Integer> entry : frequencies.entrySet()){
+                Postings list = postings.computeIfAbsent(entry.getKey(), term -> new Postings());
+                list.add(doc, entry.getValue());
+                terms[t++] = list;
+            }
+            docTerms[doc] = terms;
+        } finally{
+            lock.writeLock().unlock();
+        }
+    }
+
+    public void remove(Long productId) {
+        lock.writeLock().lock();
+        try{
+            removeDoc(productId);
+        } finally{
+            lock.writeLock().unlock();
+        }
+    }
+
+    // Returns product ids, best match first
+    public List<Long> search(String query, int limit) {
+        List<String> tokens = tokenize(query);
+        if(tokens.isEmpty() || limit < 1){
+            return Collections.emptyList();
+        }
+
+        lock.readLock().lock();
+        try{
+            if(liveDocCount == 0){
+                return Collections.emptyList();
+            }
+            float averageLength = (float) totalLength / liveDocCount;
+
+            List<QueryTerm> queryTerms = new ArrayList<>(tokens.size());
+            for(int i = 0; i < tokens.size(); i++){
+                QueryTerm queryTerm = expand(tokens.get(i), i == tokens.size() - 1);
+                if(queryTerm.size == 0){
+                    return Collections.emptyList();
+                }
+                queryTerms.add(queryTerm);
+            }
+            // Start from the rarest term so the candidate set is as small as possible
+            queryTerms.sort(Comparator.comparingLong(QueryTerm::documentFrequency));
+
+            Candidates candidates = initialCandidates(queryTerms.get(0), averageLength);
+            for(int i = 1; i < queryTerms.size() && candidates.size > 0; i++){
+                candidates.intersect(queryTerms.get(i), averageLength);
+            }
+            return topResults(candidates, limit);
+        } finally{
+            lock.readLock().unlock();
+        }
+    }
+
+    public int size() {
+        lock.readLock().lock();
+        try{
+            return liveDocCount;
+        } finally{
+            lock.readLock().unlock();
+        }
+    }
+
+    static List<String> tokenize(String text) {
+        List<String> tokens = new ArrayList<>();
+        if(text == null){
+            return tokens;
+        }
+        for(String token : text.toLowerCase(Locale.ROOT).split("[^\\p{L}\\p{N}]+")){
+            if(!token.isEmpty() && !STOP_WORDS.contains(token)){
+                tokens.add(token);
+            }
+        }
+        return tokens;
+    }
+
+    private static int addTokens(Map<String, Integer> frequencies, String text, int weight) {
+        List<String> tokens = tokenize(text);
+        for(String token : tokens){
+            frequencies.merge(token, weight, Integer::sum);
+        }
+        return tokens.size();
+    }
+
+    private void removeDoc(Long productId) {
+        Integer doc = docsByProductId.remove(productId);
+        if(doc == null){
+            return;
+        }
+        deadDocs.set(doc);
+        liveDocCount--;
+        deadDocCount++;
+        totalLength -= docLengths[doc];
+        for(Postings list : docTerms[doc]){
+            list.liveCount--;
+        }
+        docTerms[doc] = null;
+
+        if(deadDocCount >= MIN_DEAD_DOCS_TO_COMPACT && deadDocCount > liveDocCount / 4){
+            compact();
+        }
+    }
+
+    // Drops dead postings and renumbers the live documents densely, keeping every postings list sorted
+    private void compact() {
+        int[] remap = new int[nextDoc];
+        int live = 0;
+        for(int doc = 0; doc < nextDoc; doc++){
+            remap[doc] = deadDocs.get(doc) ? -1 : live++;
+        }
+
+        long[] compactedIds = new long[Math.max(1024, live * 2)];
+        int[] compactedLengths = new int[compactedIds.length];
+        Postings[][] compactedTerms = new Postings[compactedIds.length][];
+        for(int doc = 0; doc < nextDoc; doc++){
+            if(remap[doc] >= 0){
+                compactedIds[remap[doc]] = productIds[doc];
+                compactedLengths[remap[doc]] = docLengths[doc];
+                compactedTerms[remap[doc]] = docTerms[doc];
+            }
+        }
+
+        Iterator<Postings> iterator = postings.values().iterator();
+        while(iterator.hasNext()){
+            Postings list = iterator.next();
+            list.remap(remap);
+            if(list.size == 0){
+                iterator.remove();
+            }
+        }
+        docsByProductId.replaceAll((productId, doc) -> remap[doc]);
+
+        productIds = compactedIds;
+        docLengths = compactedLengths;
+        docTerms = compactedTerms;
+        nextDoc = live;
+        deadDocs.clear();
+        deadDocCount = 0;
+    }
+
+    private QueryTerm expand(String token, boolean allowPrefix) {
+        QueryTerm queryTerm = new QueryTerm();
+        if(allowPrefix && token.length() >= MIN_PREFIX_LENGTH){
+            for(Map.Entry<String, Postings> entry : postings.subMap(token, true, token + Character.MAX_VALUE, false).entrySet()){
+                if(queryTerm.size == MAX_PREFIX_EXPANSIONS){
+                    break;
+                }
+                queryTerm.add(entry.getValue(), entry.getKey().equals(token) ? 1f : PREFIX_WEIGHT, idf(entry.getValue()));
+            }
+        }
+        else{
+            Postings list = postings.get(token);
+            if(list != null){
+                queryTerm.add(list, 1f, idf(list));
+            }
+        }
+        return queryTerm;
+    }
+
+    private float idf(Postings list) {
+        int documentFrequency = list.liveCount;
+        return (float) Math.log(1 + (liveDocCount - documentFrequency + 0.5) / (documentFrequency + 0.5));
+    }
+
+    private float score(int frequency, int doc, float idf, float averageLength) {
+        float norm = K1 * (1 - B + B * docLengths[doc] / averageLength);
+        return idf * frequency * (K1 + 1) / (frequency + norm);
+    }
+
+    // Merges the term's postings lists, each sorted by document number, through a heap of list cursors ordered
+    // by their current document. A document matched by several expansions keeps its best one.
+    private Candidates initialCandidates(QueryTerm queryTerm, float averageLength) {
+        int[] positions = new int[queryTerm.size];
+        int[] heap = new int[queryTerm.size];
+        int heapSize = 0;
+        int postingCount = 0;
+        for(int m = 0; m < queryTerm.size; m++){
+            postingCount += queryTerm.matches[m].size;
+            if(queryTerm.matches[m].size > 0){
+                heap[heapSize++] = m;
+            }
+        }
+        for(int i = heapSize / 2 - 1; i >= 0; i--){
+            siftDownCursor(heap, heapSize, i, queryTerm.matches, positions);
+        }
+
+        Candidates candidates = new Candidates(postingCount);
+        while(heapSize > 0){
+            int doc = queryTerm.matches[heap[0]].docs[positions[heap[0]]];
+            boolean live = !deadDocs.get(doc);
+            float best = 0f;
+            while(heapSize > 0 && queryTerm.matches[heap[0]].docs[positions[heap[0]]] == doc){
+                int m = heap[0];
+                Postings list = queryTerm.matches[m];
+                if(live){
+                    best = Math.max(best, queryTerm.weights[m] * score(list.freqs[positions[m]], doc, queryTerm.idfs[m], averageLength));
+                }
+                if(++positions[m] == list.size){
+                    heap[0] = heap[--heapSize];
+                }
+                siftDownCursor(heap, heapSize, 0, queryTerm.matches, positions);
+            }
+            if(live){
+                candidates.append(doc, best);
+            }
+        }
+        return candidates;
+    }
+
+    private static void siftDownCursor(int[] heap, int heapSize, int i, Postings[] lists, int[] positions) {
+        while(true){
+            int smallest = i;
+            for(int child = 2 * i + 1; child <= 2 * i + 2 && child < heapSize; child++){
+                if(lists[heap[child]].docs[positions[heap[child]]] < lists[heap[smallest]].docs[positions[heap[smallest]]]){
+                    smallest = child;
+                }
+            }
+            if(smallest == i){
+                return;
+            }
+            int swap = heap[i];
+            heap[i] = heap[smallest];
+            heap[smallest] = swap;
+            i = smallest;
+        }
+    }
+
+    // Bounded min-heap of candidate positions with the weakest kept result at the root, so each candidate costs
+    // at most one comparison plus a sift of log(limit)
+    private List<Long> topResults(Candidates candidates, int limit) {
+        int[] heap = new int[Math.min(limit, candidates.size)];
+        int heapSize = 0;
+        for(int i = 0; i < candidates.size; i++){
+            if(heapSize < heap.length){
+                heap[heapSize] = i;
+                siftUpResult(heap, heapSize++, candidates);
+            }
+            else if(ranksAbove(i, heap[0], candidates)){
+                heap[0] = i;
+                siftDownResult(heap, heapSize, candidates);
+            }
+        }
+
+        Long[] results = new Long[heapSize];
+        for(int i = heapSize - 1; i >= 0; i--){
+            results[i] = productIds[candidates.docs[heap[0]]];
+            heap[0] = heap[--heapSize];
+            siftDownResult(heap, heapSize, candidates);
+        }
+        return Arrays.asList(results);
+    }
+
+    // Higher score first, then lower product id
+    private boolean ranksAbove(int a, int b, Candidates candidates) {
+        if(candidates.scores[a] != candidates.scores[b]){
+            return candidates.scores[a] > candidates.scores[b];
+        }
+        return productIds[candidates.docs[a]] < productIds[candidates.docs[b]];
+    }
+
+    private void siftUpResult(int[] heap, int i, Candidates candidates) {
+        while(i > 0){
+            int parent = (i - 1) / 2;
+            if(!ranksAbove(heap[parent], heap[i], candidates)){
+                return;
+            }
+            int swap = heap[i];
+            heap[i] = heap[parent];
+            heap[parent] = swap;
+            i = parent;
+        }
+    }
+
+    private void siftDownResult(int[] heap, int heapSize, Candidates candidates) {
+        int i = 0;
+        while(true){
+            int weakest = i;
+            for(int child = 2 * i + 1; child <= 2 * i + 2 && child < heapSize; child++){
+                if(ranksAbove(heap[weakest], heap[child], candidates)){
+                    weakest = child;
+                }
+            }
+            if(weakest == i){
+                return;
+            }
+            int swap = heap[i];
+            heap[i] = heap[weakest];
+            heap[weakest] = swap;
+            i = weakest;
+        }
+    }
+
+    private static final class Postings {
+        private int[] docs = new int[2];
+        private int[] freqs = new int[2];
+        private int size;
+        // Postings of documents that are still live; the document frequency
+        private int liveCount;
+
+        // Documents are numbered in insertion order, so appending keeps the list sorted
+        private void add(int doc, int freq) {
+            if(size == docs.length){
+                docs = Arrays.copyOf(docs, size * 2);
+                freqs = Arrays.copyOf(freqs, size * 2);
+            }
+            docs[size] = doc;
+            freqs[size] = freq;
+            size++;
+            liveCount++;
+        }
+
+        private int indexOf(int doc) {
+            return Arrays.binarySearch(docs, 0, size, doc);
+        }
+
+        private void remap(int[] remap) {
+            int kept = 0;
+            for(int i = 0; i < size; i++){
+                int doc = remap[docs[i]];
+                if(doc >= 0){
+                    docs[kept] = doc;
+                    freqs[kept] = freqs[i];
+                    kept++;
+                }
+            }
+            size = kept;
+            liveCount = kept;
+        }
+    }
+
+    // One query token with every indexed term it matches
+    private static final class QueryTerm {
+        private final Postings[] matches = new Postings[MAX_PREFIX_EXPANSIONS];
+        private final float[] weights = new float[MAX_PREFIX_EXPANSIONS];
+        private final float[] idfs = new float[MAX_PREFIX_EXPANSIONS];
+        private int size;
+
+        private void add(Postings list, float weight, float idf) {
+            matches[size] = list;
+            weights[size] = weight;
+            idfs[size] = idf;
+            size++;
+        }
+
+        private long documentFrequency() {
+            long frequency = 0;
+            for(int m = 0; m < size; m++){
+                frequency += matches[m].liveCount;
+            }
+            return frequency;
+        }
+    }
+
+    // Documents matching every term so far with their accumulated scores, sorted by document number
+    private final class Candidates {
+        private int[] docs;
+        private float[] scores;
+        private int size;
+
+        private Candidates(int capacity) {
+            docs = new int[capacity];
+            scores = new float[capacity];
+        }
+
+        private void append(int doc, float score) {
+            docs[size] = doc;
+            scores[size] = score;
+            size++;
+        }
+
+        private void intersect(QueryTerm queryTerm, float averageLength) {
+            int kept = 0;
+            for(int i = 0; i < size; i++){
+                int doc = docs[i];
+                float best = 0f;
+                for(int m = 0; m < queryTerm.size; m++){
+                    Postings list = queryTerm.matches[m];
+                    int position = list.indexOf(doc);
+                    if(position >= 0){
+                        float termScore = queryTerm.weights[m] * score(list.freqs[position], doc, queryTerm.idfs[m], averageLength);
+                        best = Math.max(best, termScore);
+                    }
+                }
+                if(best > 0f){
+                    docs[kept] = doc;
+                    scores[kept] = scores[i] + best;
+                    kept++;
+                }
+            }
+            size = kept;
+        }
+    }
+}
@@ -0,0 +1,148 @@
+package io.johnathanluong.ecommerce.api.index;
+
+import java.time.Duration;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.SmartInitializingSingleton;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.domain.Limit;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.event.TransactionalEventListener;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+
+import io.johnathanluong.ecommerce.api.dto.ProductSummary;
+import io.johnathanluong.ecommerce.api.entity.Product;
+import io.johnathanluong.ecommerce.api.event.ProductDeletedEvent;
+import io.johnathanluong.ecommerce.api.event.ProductPatchedEvent;
+import io.johnathanluong.ecommerce.api.event.ProductSavedEvent;
+import io.johnathanluong.ecommerce.api.repository.ProductRepository;
+
+// In-process SKU to product id map, built from the database before traffic and kept current from product events.
+// Lookups are lock-free reads; a miss falls back to the unique sku column and is remembered either way,
+// unknown SKUs only briefly so products written outside the service still show up.
+@Component
+public class ProductSkuIndex implements SmartInitializingSingleton {
+    private static final Logger logger = LoggerFactory.getLogger(ProductSkuIndex.class);
+
+    private final ProductRepository productRepository;
+    private final int rebuildBatchSize;
+
+    // Writes go through the synchronized methods below so the two maps always agree
+    private final Map<String, Long> idsBySku = new ConcurrentHashMap<>();
+    private final Map<Long, String> skusById = new ConcurrentHashMap<>();
+    // SKUs the database did not have; put() clears an entry as soon as a product takes the SKU
+    private final Cache<String, Boolean> missingSkus;
+
+    public ProductSkuIndex(ProductRepository productRepository,
+                           @Value("${app.sku-index.rebuild-batch-size:1000}") int rebuildBatchSize,
+                           @Value("${app.sku-index.miss-ttl-millis:2000}") long missTtlMillis,
+                           @Value("${app.sku-index.miss-max-size:10000}") long missMaxSize) {
+        this.productRepository = productRepository;
+        this.rebuildBatchSize = rebuildBatchSize;
+        this.missingSkus = Caffeine.newBuilder()
+            .expireAfterWrite(Duration.ofMillis(missTtlMillis))
+            .maximumSize(missMaxSize)
+            .build();
+    }
+
+    // Before traffic, so no product event can be overwritten by an older row the scan reads afterwards
+    @Override
+    public void afterSingletonsInstantiated() {
+        rebuild();
+    }
+
+    // Keyset scan over the catalog
+    public void rebuild() {
+        long start = System.nanoTime();
+        long afterId = 0L;
+        while(true){
+            List<ProductSummary> batch = productRepository.findSummariesAfter(afterId, Limit.of(rebuildBatchSize));
+            for(ProductSummary product : batch){
+                put(product.getId(), product.getSku());
+            }
+            if(batch.size() < rebuildBatchSize){
+                break;
+            }
+            afterId = batch.get(batch.size() - 1).getId();
+        }
+        logger.info("SKU index built with {} products in {} ms", size(), (System.nanoTime() - start) / 1_000_000);
+    }
+
+    @TransactionalEventListener(fallbackExecution = true)
+    public void onProductSaved(ProductSavedEvent event) {
+        Product product = event.getProduct();
+        put(product.getId(), product.getSku());
+    }
+
+    @TransactionalEventListener(fallbackExecution = true)
+    public void onProductPatched(ProductPatchedEvent event) {
+        String sku = event.getPatch().getSku();
+        if(sku != null){
+            put(event.getProductId(), sku);
+        }
+    }
+
+    @TransactionalEventListener(fallbackExecution = true)
+    public void onProductDeleted(ProductDeletedEvent event) {
+        remove(event.getProductId());
+    }
+
+    // Returns null when no product has the SKU
+    public Long resolve(String sku) {
+        Long id = idsBySku.get(sku);
+        if(id != null){
+            return id;
+        }
+        if(missingSkus.getIfPresent(sku) != null){
+            return null;
+        }
+        id = productRepository.findIdBySku(sku).orElse(null);
+        if(id != null){
+            put(id, sku);
+        }
+        else{
+            missingSkus.put(sku, Boolean.TRUE);
+        }
+        return id;
+    }
+
+    // A null SKU just drops whatever the product had
+    public synchronized void put(Long id, String sku) {
+        String previous = sku == null ? skusById.remove(id) : skusById.put(id, sku);
+        if(previous != null && !previous.equals(sku)){
+            idsBySku.remove(previous, id);
+        }
+        if(sku != null){
+            missingSkus.invalidate(sku);
+            // The column is unique, so a product that held this SKU before must have given it up
+            Long previousId = idsBySku.put(sku, id);
+            if(previousId != null && !previousId.equals(id)){
+                skusById.remove(previousId, sku);
+            }
+        }
+    }
+
+    public synchronized void remove(Long id) {
+        String sku = skusById.remove(id);
+        if(sku != null){
+            idsBySku.remove(sku, id);
+        }
+    }
+
+    // Drops an entry found to be stale, unless it has been replaced since
+    public synchronized void evict(String sku, Long id) {
+        if(idsBySku.remove(sku, id)){
+            skusById.remove(id, sku);
+        }
+    }
+
+    public int size() {
+        return idsBySku.size();
+    }
+}
@@ -1,11 +1,64 @@
 package io.johnathanluong.ecommerce.api.repository;
 
+import java.util.Collection;
+import java.util.List;
+import java.util.Optional;
+import java.util.stream.Stream;
+
+import org.hibernate.jpa.HibernateHints;
+import org.springframework.data.domain.Limit;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.jpa.repository.QueryHints;
+import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
+import org.springframework.transaction.annotation.Transactional;
 
+import io.johnathanluong.ecommerce.api.dto.ProductSummary;
 import io.johnathanluong.ecommerce.api.entity.Product;
+import io.johnathanluong.ecommerce.api.index.ProductSearchDocument;
+import jakarta.persistence.QueryHint;
 
 @Repository
-public interface ProductRepository extends JpaRepository<Product, Long> {
-    
+public interface ProductRepository extends JpaRepository<Product, Long>, ProductRepositoryCustom {
+    String PRODUCT_SUMMARY_SELECT = "select new io.johnathanluong.ecommerce.api.dto.ProductSummary("
+        + "p.id, p.name, p.price, p.category, p.stock, p.sku, p.brand) from Product p";
+
+    @Query(PRODUCT_SUMMARY_SELECT + " where p.id > :id order by p.id")
+    List<ProductSummary> findSummariesAfter(@Param("id") Long id, Limit limit);
+
+    // Rows per cursor fetch when streaming; callers detach the persistence context at the same interval
+    int STREAM_FETCH_SIZE = 500;
+
+    @Query(PRODUCT_SUMMARY_SELECT + " where p.id in :ids")
+    List<ProductSummary> findSummariesByIdIn(@Param("ids") Collection<Long> ids);
+
+    @Query("select new io.johnathanluong.ecommerce.api.index.ProductSearchDocument("
+        + "p.id, p.name, p.brand, p.category, p.description)"
+        + " from Product p where p.id > :id order by p.id")
+    List<ProductSearchDocument> findSearchDocumentsAfter(@Param("id") Long id, Limit limit);
+
+    @Query("select new io.johnathanluong.ecommerce.api.index.ProductSearchDocument("
+        + "p.id, p.name, p.brand, p.category, p.description)"
+        + " from Product p where p.id = :id")
+    Optional<ProductSearchDocument> findSearchDocumentById(@Param("id") Long id);
+
+    @Query("select p.id from Product p where p.sku = :sku")
+    Optional<Long> findIdBySku(@Param("sku") String sku);
+
+    // Check and decrement in one statement, so concurrent reservations can never take stock below zero.
+    // Returns 0 when the product is missing or has too little stock. Versioned, so stale conditional edits are refused.
+    @Modifying
+    @Transactional
+    @Query("update versioned Product p set p.stock = p.stock - :quantity where p.id = :id and p.stock >= :quantity")
+    int decrementStock(@Param("id") Long id, @Param("quantity") int quantity);
+
+    // Must be consumed inside a transaction; rows are fetched from the cursor in chunks of the fetch size
+    @Query("select p from Product p order by p.id")
+    @QueryHints({
+        @QueryHint(name = HibernateHints.HINT_FETCH_SIZE, value = "" + STREAM_FETCH_SIZE),
+        @QueryHint(name = HibernateHints.HINT_READ_ONLY, value = "true")
+    })
+    Stream<Product> streamAllOrderById();
 }
@@ -0,0 +1,17 @@
+package io.johnathanluong.ecommerce.api.repository;
+
+import java.util.List;
+
+import io.johnathanluong.ecommerce.api.dto.SkuUpsert;
+import io.johnathanluong.ecommerce.api.dto.SkuUpsertResult;
+import io.johnathanluong.ecommerce.api.entity.Product;
+
+public interface ProductRepositoryCustom {
+    // Writes only the non-null fields of the patch in one UPDATE without loading the product.
+    // Returns the number of rows changed: 0 when the product is missing or not at the expected version.
+    int patch(Long id, Product patch, Long expectedVersion);
+
+    // Inserts new SKUs and writes changed prices/stock for existing ones in a single statement.
+    // SKUs must be unique within the list. Returns one result per row, in no particular order.
+    List<SkuUpsertResult> upsertBySku(List<SkuUpsert> rows);
+}
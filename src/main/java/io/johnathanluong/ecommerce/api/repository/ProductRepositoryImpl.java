@@ -0,0 +1,136 @@
+package io.johnathanluong.ecommerce.api.repository;
+
+import java.math.BigDecimal;
+import java.sql.Array;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.util.List;
+
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.transaction.annotation.Transactional;
+
+import io.johnathanluong.ecommerce.api.dto.SkuUpsert;
+import io.johnathanluong.ecommerce.api.dto.SkuUpsertResult;
+import io.johnathanluong.ecommerce.api.entity.Product;
+import jakarta.persistence.EntityManager;
+import jakarta.persistence.PersistenceContext;
+import jakarta.persistence.criteria.CriteriaBuilder;
+import jakarta.persistence.criteria.CriteriaUpdate;
+import jakarta.persistence.criteria.Predicate;
+import jakarta.persistence.criteria.Root;
+
+// Picked up by Spring Data as the implementation of ProductRepositoryCustom
+public class ProductRepositoryImpl implements ProductRepositoryCustom {
+    // The rows travel as four arrays, so the statement text is the same for every batch size.
+    // Existing SKUs are updated in place and only absent, named SKUs reach the insert, so the sequence is
+    // only advanced for products that are actually created. Unchanged rows are not written at all.
+    // New ids come straight from the pooled sequence; each insert uses the top of a block Hibernate never sees.
+    // All parts read the same snapshot, so "known" says whether the SKU existed before this statement.
+    private static final String UPSERT_BY_SKU_SQL = "with input as ("
+        + " select * from unnest(?::varchar[], ?::varchar[], ?::numeric[], ?::int[]) as v(sku, name, price, stock)"
+        + "), updated as ("
+        + " update products p set"
+        + " price = coalesce(v.price, p.price),"
+        + " stock = coalesce(v.stock, p.stock),"
+        + " version = p.version + 1"
+        + " from input v"
+        + " where p.sku = v.sku"
+        + " and ((v.price is not null and v.price is distinct from p.price)"
+        + " or (v.stock is not null and v.stock is distinct from p.stock))"
+        + " returning p.id, p.sku"
+        + "), inserted as ("
+        + " insert into products (id, sku, name, price, stock, created_at, version)"
+        + " select nextval('" + Product.ID_SEQUENCE + "'), v.sku, v.name, v.price, v.stock, localtimestamp, 0"
+        + " from input v"
+        + " where v.name is not null and not exists (select 1 from products e where e.sku = v.sku)"
+        + " returning id, sku"
+        + ")"
+        + " select i.sku, coalesce(u.id, n.id) as id, exists (select 1 from products e where e.sku = i.sku) as known"
+        + " from input i left join updated u on u.sku = i.sku left join inserted n on n.sku = i.sku";
+
+    private final JdbcTemplate jdbcTemplate;
+
+    @PersistenceContext
+    private EntityManager entityManager;
+
+    public ProductRepositoryImpl(JdbcTemplate jdbcTemplate) {
+        this.jdbcTemplate = jdbcTemplate;
+    }
+
+    @Override
+    @Transactional
+    public int patch(Long id, Product patch, Long expectedVersion) {
+        CriteriaBuilder builder = entityManager.getCriteriaBuilder();
+        CriteriaUpdate<Product> update = builder.createCriteriaUpdate(Product.class);
+        Root<Product> root = update.from(Product.class);
+
+        boolean changed = set(update, root, "name", patch.getName());
+        changed |= set(update, root, "description", patch.getDescription());
+        changed |= set(update, root, "price", patch.getPrice());
+        changed |= set(update, root, "category", patch.getCategory());
+        changed |= set(update, root, "stock", patch.getStock());
+        changed |= set(update, root, "sku", patch.getSku());
+        changed |= set(update, root, "brand", patch.getBrand());
+        if(!changed){
+            throw new IllegalArgumentException("Patch must set at least one field.");
+        }
+
+        // Bulk updates bypass Hibernate's versioning, so bump it here to keep ETags honest
+        update.set(root.<Long>get("version"), builder.sum(root.<Long>get("version"), 1L));
+        Predicate matches = builder.equal(root.get("id"), id);
+        if(expectedVersion != null){
+            matches = builder.and(matches, builder.equal(root.get("version"), expectedVersion));
+        }
+        update.where(matches);
+        return entityManager.createQuery(update).executeUpdate();
+    }
+
+    @Override
+    public List<SkuUpsertResult> upsertBySku(List<SkuUpsert> rows) {
+        String[] skus = new String[rows.size()];
+        String[] names = new String[rows.size()];
+        BigDecimal[] prices = new BigDecimal[rows.size()];
+        Integer[] stocks = new Integer[rows.size()];
+        for(int i = 0; i < rows.size(); i++){
+            SkuUpsert row = rows.get(i);
+            skus[i] = row.getSku();
+            names[i] = row.getName();
+            prices[i] = row.getPrice();
+            stocks[i] = row.getStock();
+        }
+
+        return jdbcTemplate.query(connection -> {
+            PreparedStatement statement = connection.prepareStatement(UPSERT_BY_SKU_SQL);
+            statement.setArray(1, array(connection, "varchar", skus));
+            statement.setArray(2, array(connection, "varchar", names));
+            statement.setArray(3, array(connection, "numeric", prices));
+            statement.setArray(4, array(connection, "int4", stocks));
+            return statement;
+        }, (resultSet, rowNum) -> toResult(resultSet));
+    }
+
+    private static Array array(Connection connection, String type, Object[] values) throws SQLException {
+        return connection.createArrayOf(type, values);
+    }
+
+    // Snapshot rule: "known" is evaluated before the insert, so a row inserted here reads as unknown but has an id
+    private static SkuUpsertResult toResult(ResultSet resultSet) throws SQLException {
+        String sku = resultSet.getString("sku");
+        boolean known = resultSet.getBoolean("known");
+        long id = resultSet.getLong("id");
+        if(!resultSet.wasNull()){
+            return new SkuUpsertResult(sku, id, known ? SkuUpsertResult.Outcome.UPDATED : SkuUpsertResult.Outcome.INSERTED);
+        }
+        return new SkuUpsertResult(sku, null, known ? SkuUpsertResult.Outcome.UNCHANGED : SkuUpsertResult.Outcome.UNKNOWN_SKU);
+    }
+
+    private static <T> boolean set(CriteriaUpdate<Product> update, Root<Product> root, String attribute, T value) {
+        if(value == null){
+            return false;
+        }
+        update.set(root.<T>get(attribute), value);
+        return true;
+    }
+}
@@ -0,0 +1,65 @@
+package io.johnathanluong.ecommerce.api.repository;
+
+import java.time.LocalDateTime;
+
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.stereotype.Repository;
+
+import io.johnathanluong.ecommerce.api.entity.ProductReviewStats;
+
+@Repository
+public interface ProductReviewStatsRepository extends JpaRepository<ProductReviewStats, Long>{
+    String STATS_COLUMNS = " (product_id, positive_count, negative_count, neutral_count, mixed_count, unscored_count,"
+        + " total_count, last_review_at)";
+
+    // The product's totals counted straight from its reviews, read through the (product_id, created_at, id) index
+    String REVIEWS_AGGREGATE = " select cast(:productId as bigint),"
+        + " count(*) filter (where r.sentiment = 'POSITIVE'),"
+        + " count(*) filter (where r.sentiment = 'NEGATIVE'),"
+        + " count(*) filter (where r.sentiment = 'NEUTRAL'),"
+        + " count(*) filter (where r.sentiment = 'MIXED'),"
+        + " count(*) filter (where r.sentiment is null or r.sentiment not in ('POSITIVE', 'NEGATIVE', 'NEUTRAL', 'MIXED')),"
+        + " count(*), max(r.created_at)"
+        + " from reviews r where r.product_id = :productId";
+
+    // Adds the deltas to the product's row in a single atomic statement, so concurrent review writes never lose
+    // an increment. A product without a row yet, e.g. one reviewed before the stats table existed, gets a row
+    // counted from its reviews instead; the caller's write is flushed first, so that count already includes it.
+    // While the row exists the aggregate is skipped by the not exists guard and never scans the reviews.
+    @Modifying(flushAutomatically = true)
+    @Query(value = "insert into product_review_stats as s" + STATS_COLUMNS
+        + REVIEWS_AGGREGATE
+        + " and not exists (select 1 from product_review_stats e where e.product_id = :productId)"
+        + " on conflict (product_id) do update set"
+        + " positive_count = s.positive_count + :positive,"
+        + " negative_count = s.negative_count + :negative,"
+        + " neutral_count = s.neutral_count + :neutral,"
+        + " mixed_count = s.mixed_count + :mixed,"
+        + " unscored_count = s.unscored_count + :unscored,"
+        + " total_count = s.total_count + :total,"
+        + " last_review_at = greatest(s.last_review_at, cast(:reviewedAt as timestamp))",
+        nativeQuery = true)
+    int applyDelta(@Param("productId") Long productId, @Param("positive") long positive, @Param("negative") long negative,
+                   @Param("neutral") long neutral, @Param("mixed") long mixed, @Param("unscored") long unscored,
+                   @Param("total") long total, @Param("reviewedAt") LocalDateTime reviewedAt);
+
+    // Creates the row of a product that has reviews but no writes since the stats table appeared
+    @Modifying
+    @Query(value = "insert into product_review_stats" + STATS_COLUMNS
+        + REVIEWS_AGGREGATE
+        + " group by r.product_id"
+        + " on conflict (product_id) do nothing",
+        nativeQuery = true)
+    int insertFromReviews(@Param("productId") Long productId);
+
+    // Served by the (product_id, created_at, id) index on reviews. Pending deletes are flushed first.
+    @Modifying(flushAutomatically = true)
+    @Query(value = "update product_review_stats set last_review_at ="
+        + " (select max(r.created_at) from reviews r where r.product_id = :productId)"
+        + " where product_id = :productId",
+        nativeQuery = true)
+    int refreshLastReviewAt(@Param("productId") Long productId);
+}
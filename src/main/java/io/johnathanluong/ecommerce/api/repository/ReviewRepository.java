@@ -1,14 +1,70 @@
 package io.johnathanluong.ecommerce.api.repository;
 
+import org.springframework.data.domain.Limit;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
+import org.springframework.transaction.annotation.Transactional;
 
-import io.johnathanluong.ecommerce.api.entity.Product;
+import io.johnathanluong.ecommerce.api.dto.ReviewView;
 import io.johnathanluong.ecommerce.api.entity.Review;
+
+import java.time.LocalDateTime;
 import java.util.List;
 
 
 @Repository
 public interface ReviewRepository extends JpaRepository<Review, Long>{
-    List<Review> findAllByProduct(Product product);
+    // Review listings select straight into ReviewView with the author joined in the same statement,
+    // so a page is exactly one query whatever its size
+    String REVIEW_VIEW_SELECT = "select new io.johnathanluong.ecommerce.api.dto.ReviewView("
+        + "r.id, r.reviewText, r.sentiment, r.createdAt, u.id, u.username)"
+        + " from Review r join r.user u";
+
+    // Keyset pages for the product listing. Each ordering has a matching index on reviews, so every page is
+    // an index range scan no matter how deep into the listing it is. The cursor predicates are written as a
+    // row-value comparison, or with a redundant leading bound, so the scan can start at the cursor.
+    // Filtering on the product id reads the product_id column directly without loading or joining products.
+    @Query(REVIEW_VIEW_SELECT + " where r.product.id = :productId"
+        + " order by r.createdAt desc, r.id desc")
+    List<ReviewView> findNewest(@Param("productId") Long productId, Limit limit);
+
+    @Query(REVIEW_VIEW_SELECT + " where r.product.id = :productId"
+        + " and (r.createdAt, r.id) < (:createdAt, :id)"
+        + " order by r.createdAt desc, r.id desc")
+    List<ReviewView> findNewestAfter(@Param("productId") Long productId, @Param("createdAt") LocalDateTime createdAt,
+                                     @Param("id") Long id, Limit limit);
+
+    @Query(REVIEW_VIEW_SELECT + " where r.product.id = :productId"
+        + " order by r.sentiment asc, r.createdAt desc, r.id desc")
+    List<ReviewView> findSentimentOrdered(@Param("productId") Long productId, Limit limit);
+
+    @Query(REVIEW_VIEW_SELECT + " where r.product.id = :productId"
+        + " and r.sentiment >= :sentiment"
+        + " and (r.sentiment > :sentiment or (r.sentiment = :sentiment and (r.createdAt, r.id) < (:createdAt, :id)))"
+        + " order by r.sentiment asc, r.createdAt desc, r.id desc")
+    List<ReviewView> findSentimentOrderedAfter(@Param("productId") Long productId, @Param("sentiment") String sentiment,
+                                          @Param("createdAt") LocalDateTime createdAt, @Param("id") Long id, Limit limit);
+
+    // Reviews written before every review got a sentiment on insert; the sentiment cursor has no place for a null
+    @Modifying
+    @Transactional
+    @Query("update Review r set r.sentiment = 'PENDING' where r.sentiment is null")
+    int markMissingSentimentsPending();
+
+    // Sentiments the sentiment sweep re-scores. The sweep reads them through idx_reviews_sentiment_id, so only
+    // the few reviews still waiting are touched however many have been scored.
+    String UNSCORED_SENTIMENTS = "('PENDING', 'UNKNOWN')";
+
+    @Query("select r from Review r where r.sentiment in " + UNSCORED_SENTIMENTS
+        + " and r.id > :id order by r.id")
+    List<Review> findUnscoredAfter(@Param("id") Long id, Limit limit);
+
+    @Modifying
+    @Transactional
+    @Query("update Review r set r.sentiment = :sentiment where r.id = :id and r.reviewText = :reviewText and r.sentiment = :expectedSentiment")
+    int updateSentiment(@Param("id") Long id, @Param("reviewText") String reviewText,
+                        @Param("expectedSentiment") String expectedSentiment, @Param("sentiment") String sentiment);
 }
@@ -0,0 +1,10 @@
+package io.johnathanluong.ecommerce.api.repository;
+
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.stereotype.Repository;
+
+import io.johnathanluong.ecommerce.api.entity.SentimentCacheEntry;
+
+@Repository
+public interface SentimentCacheRepository extends JpaRepository<SentimentCacheEntry, String>{
+}
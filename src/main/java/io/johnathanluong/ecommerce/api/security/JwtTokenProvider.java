@@ -1,28 +1,108 @@
 package io.johnathanluong.ecommerce.api.security;
 
 import io.jsonwebtoken.Claims;
+import io.jsonwebtoken.Header;
+import io.jsonwebtoken.JwtBuilder;
 import io.jsonwebtoken.JwtException;
+import io.jsonwebtoken.JwtParser;
 import io.jsonwebtoken.Jwts;
+import io.jsonwebtoken.ProtectedHeader;
+import io.jsonwebtoken.UnsupportedJwtException;
 import io.jsonwebtoken.io.Decoders;
 import io.jsonwebtoken.security.Keys;
 import org.springframework.beans.factory.annotation.Value;
 import org.springframework.security.core.Authentication;
+import org.springframework.security.core.GrantedAuthority;
+import org.springframework.security.core.authority.AuthorityUtils;
+import org.springframework.security.core.authority.SimpleGrantedAuthority;
 import org.springframework.stereotype.Component;
+
+import io.micrometer.core.instrument.FunctionCounter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.MeterBinder;
+
+import java.security.Key;
+import java.time.Clock;
+import java.util.ArrayList;
+import java.util.Collection;
 import java.util.Date;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
 
 import javax.crypto.SecretKey;
 
 @Component
-public class JwtTokenProvider {
+public class JwtTokenProvider implements MeterBinder {
+    public static final String USER_ID_CLAIM = "uid";
+    public static final String AUTHORITIES_CLAIM = "auth";
+
+    private final int jwtExpirationInMs;
+    private final String signingKeyId;
+    private final SecretKey signingKey;
+    private final Map<String, SecretKey> verificationKeys;
+    // JwtParser is immutable and thread-safe, so one instance serves every request
+    private final JwtParser jwtParser;
+    private final VerifiedTokenCache verifiedTokenCache;
+
+    // Retired secrets are "kid:base64secret" pairs separated by commas; they can still verify tokens but never sign
+    public JwtTokenProvider(@Value("${app.jwt-secret}") String jwtSecret,
+                            @Value("${app.jwt-expiration-milliseconds}") int jwtExpirationInMs,
+                            @Value("${app.jwt-key-id:primary}") String jwtKeyId,
+                            @Value("${app.jwt-retired-secrets:}") String retiredSecrets,
+                            @Value("${app.jwt-cache-max-size:10000}") int tokenCacheMaxSize) {
+        this.jwtExpirationInMs = jwtExpirationInMs;
+        this.signingKeyId = jwtKeyId;
+        this.signingKey = hmacKey(jwtSecret);
+
+        Map<String, SecretKey> keys = new HashMap<>();
+        for(String entry : retiredSecrets.split(",")){
+            if(entry.isBlank())
+                continue;
+            int separator = entry.indexOf(':');
+            if(separator <= 0){
+                throw new IllegalArgumentException("Retired JWT secrets must be formatted as kid:secret");
+            }
+            keys.put(entry.substring(0, separator).trim(), hmacKey(entry.substring(separator + 1).trim()));
+        }
+        keys.put(signingKeyId, signingKey);
+        this.verificationKeys = Map.copyOf(keys);
+
+        this.jwtParser = Jwts.parser()
+                .keyLocator(this::locateKey)
+                .build();
+        this.verifiedTokenCache = new VerifiedTokenCache(tokenCacheMaxSize, Clock.systemUTC());
+    }
 
-    @Value("${app.jwt-secret}") 
-    private String jwtSecret;
+    @Override
+    public void bindTo(MeterRegistry registry) {
+        FunctionCounter.builder("security.jwt.cache", verifiedTokenCache, VerifiedTokenCache::getHits)
+                .tag("result", "hit")
+                .description("Bearer tokens served from the verified-token cache")
+                .register(registry);
+        FunctionCounter.builder("security.jwt.cache", verifiedTokenCache, VerifiedTokenCache::getMisses)
+                .tag("result", "miss")
+                .description("Bearer tokens that required signature verification")
+                .register(registry);
+        Gauge.builder("security.jwt.cache.size", verifiedTokenCache, VerifiedTokenCache::size)
+                .register(registry);
+    }
 
-    @Value("${app.jwt-expiration-milliseconds}") 
-    private int jwtExpirationInMs;
+    private static SecretKey hmacKey(String secret) {
+        return Keys.hmacShaKeyFor(Decoders.BASE64.decode(secret));
+    }
 
-    private SecretKey key() {
-        return Keys.hmacShaKeyFor(Decoders.BASE64.decode(jwtSecret));
+    // Tokens issued before key ids were introduced carry no kid and are checked against the current key
+    private Key locateKey(Header header) {
+        if(header instanceof ProtectedHeader protectedHeader && protectedHeader.getKeyId() != null){
+            SecretKey key = verificationKeys.get(protectedHeader.getKeyId());
+            if(key == null){
+                throw new UnsupportedJwtException("Unknown signing key id: " + protectedHeader.getKeyId());
+            }
+            return key;
+        }
+        return signingKey;
     }
 
     public String generateToken(Authentication authentication) {
@@ -30,33 +110,73 @@ public class JwtTokenProvider {
         Date now = new Date();
         Date expireDate = new Date(now.getTime() + jwtExpirationInMs);
 
-        return Jwts.builder()
+        List<String> authorities = new ArrayList<>();
+        if(authentication.getAuthorities() != null){
+            for(GrantedAuthority authority : authentication.getAuthorities()){
+                authorities.add(authority.getAuthority());
+            }
+        }
+
+        JwtBuilder builder = Jwts.builder()
+                .header().keyId(signingKeyId).and()
                 .subject(username)
+                .claim(AUTHORITIES_CLAIM, authorities)
                 .issuedAt(now)
-                .expiration(expireDate)
-                .signWith(key())
-                .compact();
+                .expiration(expireDate);
+        if(authentication.getPrincipal() instanceof UserPrincipal principal){
+            builder.claim(USER_ID_CLAIM, principal.getId());
+        }
+        return builder.signWith(signingKey).compact();
     }
 
+    // Rebuilds the principal from verified claims; null for tokens issued without the id claim
+    public UserPrincipal getPrincipalFromClaims(Claims claims) {
+        if(!(claims.get(USER_ID_CLAIM) instanceof Number userId)){
+            return null;
+        }
+
+        List<GrantedAuthority> authorities = AuthorityUtils.NO_AUTHORITIES;
+        if(claims.get(AUTHORITIES_CLAIM) instanceof Collection<?> names && !names.isEmpty()){
+            authorities = new ArrayList<>();
+            for(Object name : names){
+                authorities.add(new SimpleGrantedAuthority(String.valueOf(name)));
+            }
+        }
+        return new UserPrincipal(userId.longValue(), claims.getSubject(), "", authorities);
+    }
+
+
+    // Verifies the signature and expiry once and hands back the claims, or null if the token is not valid
+    public Claims parseClaims(String token) {
+        try {
+            return jwtParser
+                    .parseSignedClaims(token)
+                    .getPayload();
+        } catch (JwtException | IllegalArgumentException ex) {
+            return null;
+        }
+    }
+
+    // Same contract as parseClaims, but repeated tokens skip verification until they expire
+    public Claims resolveClaims(String token) {
+        Claims claims = verifiedTokenCache.get(token);
+        if(claims == null){
+            claims = parseClaims(token);
+            if(claims != null){
+                verifiedTokenCache.put(token, claims);
+            }
+        }
+        return claims;
+    }
 
     public String getUsernameFromJwt(String token) {
-        Claims claims = Jwts.parser()
-                .verifyWith(key())
-                .build()
+        Claims claims = jwtParser
                 .parseSignedClaims(token)
                 .getPayload();
         return claims.getSubject();
     }
 
     public boolean validateToken(String token) {
-        try {
-            Jwts.parser()
-                    .verifyWith(key())
-                    .build()
-                    .parseSignedClaims(token);
-            return true;
-        } catch (JwtException ex) { 
-            return false;
-        }
+        return parseClaims(token) != null;
     }
-}
\ No newline at end of file
+}
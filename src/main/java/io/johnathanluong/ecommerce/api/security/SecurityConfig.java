@@ -61,9 +61,13 @@ public class SecurityConfig {
                         .requestMatchers("/api/auth/**").permitAll()
                         .requestMatchers("/api/users", "/api/users/").permitAll()
                         .requestMatchers(org.springframework.http.HttpMethod.GET, "/api/products/{productId}/reviews").permitAll()
+                        .requestMatchers(org.springframework.http.HttpMethod.GET, "/api/products/{productId}/reviews/summary").permitAll()
                         .requestMatchers(org.springframework.http.HttpMethod.GET, "/api/reviews/{id}").permitAll()
                         .requestMatchers(org.springframework.http.HttpMethod.GET, "/api/products").permitAll()
+                        .requestMatchers(org.springframework.http.HttpMethod.GET, "/api/products/search").permitAll()
+                        .requestMatchers(org.springframework.http.HttpMethod.GET, "/api/products/facets").permitAll()
                         .requestMatchers(org.springframework.http.HttpMethod.GET, "/api/products/{id}").permitAll()
+                        .requestMatchers(org.springframework.http.HttpMethod.GET, "/api/products/sku/{sku}").permitAll()
                         .requestMatchers(org.springframework.http.HttpMethod.GET, "/api/users/{username}/username").permitAll()
                         .anyRequest().authenticated()
                 )
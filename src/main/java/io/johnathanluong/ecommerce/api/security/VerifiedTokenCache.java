@@ -0,0 +1,110 @@
+package io.johnathanluong.ecommerce.api.security;
+
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.time.Clock;
+import java.util.Base64;
+import java.util.Date;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.github.benmanes.caffeine.cache.Expiry;
+
+import io.jsonwebtoken.Claims;
+
+// Remembers tokens that already passed signature verification, keyed by a SHA-256 of the token so raw
+// bearer tokens are never held in memory. An entry is only served while now < exp.
+//
+// Caffeine bounds the size and expires each entry at its own exp, so a full cache evicts in amortized
+// constant time instead of scanning for expired tokens.
+public class VerifiedTokenCache {
+    private final Cache<String, Entry> entries;
+    private final int maxSize;
+    private final Clock clock;
+    private final LongAdder hits = new LongAdder();
+    private final LongAdder misses = new LongAdder();
+
+    public VerifiedTokenCache(int maxSize, Clock clock) {
+        this.maxSize = maxSize;
+        this.clock = clock;
+        this.entries = Caffeine.newBuilder()
+            .maximumSize(Math.max(maxSize, 0))
+            .expireAfter(new Expiry<String, Entry>() {
+                @Override
+                public long expireAfterCreate(String key, Entry entry, long currentTime) {
+                    return remainingNanos(entry);
+                }
+
+                @Override
+                public long expireAfterUpdate(String key, Entry entry, long currentTime, long currentDuration) {
+                    return remainingNanos(entry);
+                }
+
+                @Override
+                public long expireAfterRead(String key, Entry entry, long currentTime, long currentDuration) {
+                    return currentDuration;
+                }
+            })
+            .ticker(() -> TimeUnit.MILLISECONDS.toNanos(clock.millis()))
+            // Maintenance is cheap and amortized; running it on the caller keeps size() exact
+            .executor(Runnable::run)
+            .build();
+    }
+
+    public Claims get(String token) {
+        Entry entry = entries.getIfPresent(hash(token));
+        if(entry == null || entry.expiresAtMillis <= clock.millis()){
+            misses.increment();
+            return null;
+        }
+        hits.increment();
+        return entry.claims;
+    }
+
+    public void put(String token, Claims claims) {
+        Date expiration = claims.getExpiration();
+        // Tokens without an expiry are never cached
+        if(maxSize <= 0 || expiration == null || expiration.getTime() <= clock.millis()){
+            return;
+        }
+        entries.put(hash(token), new Entry(claims, expiration.getTime()));
+    }
+
+    public long getHits() {
+        return hits.sum();
+    }
+
+    public long getMisses() {
+        return misses.sum();
+    }
+
+    public long size() {
+        return entries.estimatedSize();
+    }
+
+    private long remainingNanos(Entry entry) {
+        return TimeUnit.MILLISECONDS.toNanos(Math.max(entry.expiresAtMillis - clock.millis(), 0));
+    }
+
+    private static String hash(String token) {
+        try {
+            MessageDigest digest = MessageDigest.getInstance("SHA-256");
+            return Base64.getEncoder().encodeToString(digest.digest(token.getBytes(StandardCharsets.UTF_8)));
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException("SHA-256 is not available", e);
+        }
+    }
+
+    private static final class Entry {
+        private final Claims claims;
+        private final long expiresAtMillis;
+
+        private Entry(Claims claims, long expiresAtMillis) {
+            this.claims = claims;
+            this.expiresAtMillis = expiresAtMillis;
+        }
+    }
+}
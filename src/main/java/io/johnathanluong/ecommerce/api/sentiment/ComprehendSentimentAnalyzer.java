@@ -0,0 +1,63 @@
+package io.johnathanluong.ecommerce.api.sentiment;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.stereotype.Component;
+
+import software.amazon.awssdk.services.comprehend.ComprehendClient;
+import software.amazon.awssdk.services.comprehend.model.BatchDetectSentimentItemResult;
+import software.amazon.awssdk.services.comprehend.model.BatchDetectSentimentRequest;
+import software.amazon.awssdk.services.comprehend.model.BatchDetectSentimentResponse;
+import software.amazon.awssdk.services.comprehend.model.BatchItemError;
+import software.amazon.awssdk.services.comprehend.model.DetectSentimentRequest;
+
+@Component
+@ConditionalOnProperty(name = "app.sentiment.analyzer", havingValue = "comprehend", matchIfMissing = true)
+public class ComprehendSentimentAnalyzer implements SentimentAnalyzer {
+    // Hard limit of the Comprehend batch API
+    private static final int MAX_BATCH_SIZE = 25;
+    private static final String LANGUAGE_CODE = "en";
+    private static final Logger logger = LoggerFactory.getLogger(ComprehendSentimentAnalyzer.class);
+
+    private final ComprehendClient comprehendClient;
+
+    public ComprehendSentimentAnalyzer(ComprehendClient comprehendClient) {
+        this.comprehendClient = comprehendClient;
+    }
+
+    @Override
+    public String analyze(String text) {
+        return comprehendClient.detectSentiment(DetectSentimentRequest.builder()
+            .text(text)
+            .languageCode(LANGUAGE_CODE)
+            .build())
+            .sentimentAsString();
+    }
+
+    @Override
+    public List<String> analyzeBatch(List<String> texts) {
+        BatchDetectSentimentResponse response = comprehendClient.batchDetectSentiment(BatchDetectSentimentRequest.builder()
+            .textList(texts)
+            .languageCode(LANGUAGE_CODE)
+            .build());
+
+        List<String> sentiments = new ArrayList<>(Collections.nCopies(texts.size(), (String) null));
+        for(BatchDetectSentimentItemResult result : response.resultList()){
+            sentiments.set(result.index(), result.sentimentAsString());
+        }
+        for(BatchItemError error : response.errorList()){
+            logger.debug("Sentiment detection failed for document {}: {}", error.index(), error.errorMessage());
+        }
+        return sentiments;
+    }
+
+    @Override
+    public int maxBatchSize() {
+        return MAX_BATCH_SIZE;
+    }
+}
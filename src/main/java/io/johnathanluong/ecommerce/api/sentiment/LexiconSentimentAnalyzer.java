@@ -0,0 +1,80 @@
+package io.johnathanluong.ecommerce.api.sentiment;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+import java.util.Set;
+
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.stereotype.Component;
+
+// In-process word list scorer. Far less accurate than Comprehend but needs no network, which makes it
+// suitable for air-gapped test and load environments. A negation word flips the polarity of the next few words.
+@Component
+@ConditionalOnProperty(name = "app.sentiment.analyzer", havingValue = "lexicon")
+public class LexiconSentimentAnalyzer implements SentimentAnalyzer {
+    private static final int MAX_BATCH_SIZE = 100;
+    private static final int NEGATION_WINDOW = 3;
+    // Both polarities count as mixed once the weaker side is at least half the stronger one
+    private static final double MIXED_RATIO = 0.5;
+
+    private static final Set<String> POSITIVE_WORDS = Set.of(
+        "good", "great", "excellent", "amazing", "awesome", "love", "loved", "loves", "like", "liked",
+        "perfect", "best", "fantastic", "wonderful", "happy", "nice", "fast", "quick", "recommend",
+        "recommended", "reliable", "sturdy", "comfortable", "beautiful", "easy", "worth", "pleased",
+        "satisfied", "solid", "impressive", "quality", "works", "brilliant", "superb", "favorite");
+    private static final Set<String> NEGATIVE_WORDS = Set.of(
+        "bad", "terrible", "awful", "horrible", "poor", "hate", "hated", "worst", "broken", "broke",
+        "cheap", "slow", "disappointed", "disappointing", "useless", "waste", "defective", "faulty",
+        "returned", "return", "refund", "flimsy", "uncomfortable", "difficult", "hard", "annoying",
+        "junk", "garbage", "problem", "problems", "issue", "issues", "fail", "failed", "fails", "late");
+    private static final Set<String> NEGATIONS = Set.of(
+        "not", "no", "never", "dont", "don't", "didnt", "didn't", "doesnt", "doesn't", "isnt", "isn't",
+        "wasnt", "wasn't", "cant", "can't", "wont", "won't", "hardly", "without");
+
+    @Override
+    public String analyze(String text) {
+        int positive = 0;
+        int negative = 0;
+        int negatedUntil = -1;
+
+        String[] tokens = text.toLowerCase(Locale.ROOT).split("[^a-z']+");
+        for(int i = 0; i < tokens.length; i++){
+            String token = tokens[i];
+            if(NEGATIONS.contains(token)){
+                negatedUntil = i + NEGATION_WINDOW;
+                continue;
+            }
+
+            boolean negated = i <= negatedUntil;
+            if(POSITIVE_WORDS.contains(token)){
+                if(negated) negative++; else positive++;
+            }
+            else if(NEGATIVE_WORDS.contains(token)){
+                if(negated) positive++; else negative++;
+            }
+        }
+
+        if(positive == 0 && negative == 0){
+            return "NEUTRAL";
+        }
+        if(Math.min(positive, negative) >= Math.max(positive, negative) * MIXED_RATIO){
+            return "MIXED";
+        }
+        return positive > negative ? "POSITIVE" : "NEGATIVE";
+    }
+
+    @Override
+    public List<String> analyzeBatch(List<String> texts) {
+        List<String> sentiments = new ArrayList<>(texts.size());
+        for(String text : texts){
+            sentiments.add(analyze(text));
+        }
+        return sentiments;
+    }
+
+    @Override
+    public int maxBatchSize() {
+        return MAX_BATCH_SIZE;
+    }
+}
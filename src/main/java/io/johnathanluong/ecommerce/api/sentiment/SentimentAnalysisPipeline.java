@@ -0,0 +1,380 @@
+package io.johnathanluong.ecommerce.api.sentiment;
+
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.domain.Limit;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.scheduling.concurrent.CustomizableThreadFactory;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import io.johnathanluong.ecommerce.api.entity.Review;
+import io.johnathanluong.ecommerce.api.repository.ReviewRepository;
+import io.johnathanluong.ecommerce.api.service.ReviewStatsService;
+import io.github.resilience4j.bulkhead.Bulkhead;
+import io.github.resilience4j.bulkhead.BulkheadFullException;
+import io.github.resilience4j.circuitbreaker.CallNotPermittedException;
+import io.github.resilience4j.circuitbreaker.CircuitBreaker;
+import jakarta.annotation.PreDestroy;
+
+// Scores reviews off the request thread. Reviews are stored as PENDING and queued here; worker threads
+// coalesce queued texts into analyzer batches (up to 25 documents for Comprehend, or whatever arrived within
+// the linger window) and write each result back to its review. When the queue is full the review simply
+// stays PENDING until the periodic sweep requeues it. Analyzer calls go through a circuit breaker and a
+// bulkhead; while the backend is unavailable a review is marked UNKNOWN and re-scored by the sweep after the
+// breaker closes again. A review the analyzer keeps rejecting on its own is marked FAILED and left alone.
+@Component
+public class SentimentAnalysisPipeline {
+    public static final String PENDING = "PENDING";
+    public static final String UNKNOWN = "UNKNOWN";
+    public static final String FAILED = "FAILED";
+
+    private static final Logger logger = LoggerFactory.getLogger(SentimentAnalysisPipeline.class);
+    private static final int SWEEP_BATCH_SIZE = 100;
+
+    private final SentimentAnalyzer sentimentAnalyzer;
+    private final ReviewRepository reviewRepository;
+    private final ReviewStatsService reviewStatsService;
+    private final SentimentCache sentimentCache;
+    private final CircuitBreaker circuitBreaker;
+    private final Bulkhead bulkhead;
+    private final BlockingQueue<Job> queue;
+    private final ExecutorService workers;
+    // Holds failed jobs through their backoff so no worker sits idle waiting on a retry
+    private final ScheduledExecutorService retryScheduler;
+    private final Set<Long> inFlight = ConcurrentHashMap.newKeySet();
+    private final int batchSize;
+    private final long lingerNanos;
+    private final int maxAttempts;
+    private final long retryBackoffMs;
+    private volatile boolean running = true;
+    private volatile long sweepCursor = 0L;
+
+    public SentimentAnalysisPipeline(SentimentAnalyzer sentimentAnalyzer, ReviewRepository reviewRepository,
+                                     ReviewStatsService reviewStatsService,
+                                     SentimentCache sentimentCache, CircuitBreaker sentimentCircuitBreaker,
+                                     Bulkhead sentimentBulkhead,
+                                     @Value("${app.sentiment.workers:2}") int workerCount,
+                                     @Value("${app.sentiment.queue-capacity:1000}") int queueCapacity,
+                                     @Value("${app.sentiment.batch-size:25}") int batchSize,
+                                     @Value("${app.sentiment.max-linger-ms:200}") long maxLingerMs,
+                                     @Value("${app.sentiment.max-attempts:3}") int maxAttempts,
+                                     @Value("${app.sentiment.retry-backoff-ms:500}") long retryBackoffMs) {
+        this.sentimentAnalyzer = sentimentAnalyzer;
+        this.reviewRepository = reviewRepository;
+        this.reviewStatsService = reviewStatsService;
+        this.sentimentCache = sentimentCache;
+        this.circuitBreaker = sentimentCircuitBreaker;
+        this.bulkhead = sentimentBulkhead;
+        this.queue = new LinkedBlockingQueue<>(queueCapacity);
+        this.batchSize = Math.max(1, Math.min(batchSize, sentimentAnalyzer.maxBatchSize()));
+        this.lingerNanos = TimeUnit.MILLISECONDS.toNanos(maxLingerMs);
+        this.maxAttempts = maxAttempts;
+        this.retryBackoffMs = retryBackoffMs;
+        this.workers = Executors.newFixedThreadPool(workerCount, new CustomizableThreadFactory("sentiment-"));
+        this.retryScheduler = Executors.newSingleThreadScheduledExecutor(new CustomizableThreadFactory("sentiment-retry-"));
+        for(int i = 0; i < workerCount; i++){
+            workers.execute(this::runWorker);
+        }
+    }
+
+    // Inside a transaction the review is only queued once it has been committed
+    public void submit(Long reviewId, Long productId, String reviewText) {
+        if(TransactionSynchronizationManager.isSynchronizationActive()){
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                @Override
+                public void afterCommit() {
+                    enqueue(reviewId, productId, reviewText, PENDING);
+                }
+            });
+        }
+        else{
+            enqueue(reviewId, productId, reviewText, PENDING);
+        }
+    }
+
+    private boolean enqueue(Long reviewId, Long productId, String reviewText, String currentSentiment) {
+        if(!inFlight.add(reviewId)){
+            return true;
+        }
+        if(!queue.offer(new Job(reviewId, productId, reviewText, currentSentiment, 1))){
+            inFlight.remove(reviewId);
+            logger.debug("Sentiment queue full, review {} left pending", reviewId);
+            return false;
+        }
+        return true;
+    }
+
+    private void runWorker() {
+        while(running){
+            try{
+                List<Job> batch = nextBatch();
+                if(!batch.isEmpty()){
+                    process(batch);
+                }
+            } catch(InterruptedException e){
+                Thread.currentThread().interrupt();
+                return;
+            } catch(RuntimeException e){
+                logger.error("Sentiment worker failed to process a batch", e);
+            }
+        }
+    }
+
+    // Blocks for the first job, then waits at most the linger window for the batch to fill up
+    private List<Job> nextBatch() throws InterruptedException {
+        List<Job> batch = new ArrayList<>(batchSize);
+        Job first = queue.poll(1, TimeUnit.SECONDS);
+        if(first == null){
+            return batch;
+        }
+        batch.add(first);
+
+        long deadline = System.nanoTime() + lingerNanos;
+        while(batch.size() < batchSize){
+            queue.drainTo(batch, batchSize - batch.size());
+            long remaining = deadline - System.nanoTime();
+            if(batch.size() >= batchSize || remaining <= 0){
+                break;
+            }
+            Job next = queue.poll(remaining, TimeUnit.NANOSECONDS);
+            if(next == null){
+                break;
+            }
+            batch.add(next);
+        }
+        return batch;
+    }
+
+    private void process(List<Job> batch) {
+        try{
+            score(batch);
+        } finally{
+            // Whatever an unexpected failure left behind is released, so the sweep can queue it again
+            for(Job job : batch){
+                if(!job.settled){
+                    release(job);
+                }
+            }
+        }
+    }
+
+    private void score(List<Job> batch) {
+        // Cached texts are written straight away and identical texts within the batch are analyzed once
+        Map<String, List<Job>> uncached = new LinkedHashMap<>();
+        for(Job job : batch){
+            String cached = cachedSentiment(job.reviewText);
+            if(cached != null){
+                complete(job, cached);
+            }
+            else{
+                uncached.computeIfAbsent(SentimentCache.key(job.reviewText), key -> new ArrayList<>()).add(job);
+            }
+        }
+        if(uncached.isEmpty()){
+            return;
+        }
+
+        List<List<Job>> groups = new ArrayList<>(uncached.values());
+        List<String> texts = new ArrayList<>(groups.size());
+        for(List<Job> group : groups){
+            texts.add(group.get(0).reviewText);
+        }
+
+        List<String> sentiments;
+        try{
+            sentiments = circuitBreaker.executeSupplier(
+                Bulkhead.decorateSupplier(bulkhead, () -> sentimentAnalyzer.analyzeBatch(texts)));
+        } catch(CallNotPermittedException | BulkheadFullException e){
+            logger.debug("Sentiment backend unavailable, {} reviews marked {}", batch.size(), UNKNOWN);
+            List<Job> rejected = new ArrayList<>();
+            groups.forEach(rejected::addAll);
+            degrade(rejected, UNKNOWN);
+            return;
+        } catch(RuntimeException e){
+            logger.warn("Sentiment detection failed for a batch of {} reviews", texts.size(), e);
+            List<Job> failed = new ArrayList<>();
+            groups.forEach(failed::addAll);
+            retry(failed, UNKNOWN);
+            return;
+        }
+
+        List<Job> failed = new ArrayList<>();
+        for(int i = 0; i < groups.size(); i++){
+            String sentiment = sentiments.get(i);
+            if(sentiment == null){
+                failed.addAll(groups.get(i));
+                continue;
+            }
+            cacheSentiment(texts.get(i), sentiment);
+            for(Job job : groups.get(i)){
+                complete(job, sentiment);
+            }
+        }
+        // The rest of the batch went through, so these texts are the problem rather than the backend
+        if(!failed.isEmpty()){
+            retry(failed, FAILED);
+        }
+    }
+
+    // A write that fails goes back through retry on its own, so one bad review never strands the rest of its batch
+    private void complete(Job job, String sentiment) {
+        if(store(job, sentiment)){
+            release(job);
+        }
+        else{
+            retry(List.of(job), UNKNOWN);
+        }
+    }
+
+    private boolean store(Job job, String sentiment) {
+        try{
+            // Only lands if the text is unchanged and nobody scored the review in the meantime,
+            // and moves the review between the product's sentiment counts in the same transaction
+            reviewStatsService.updateSentiment(job.reviewId, job.productId, job.reviewText, job.currentSentiment, sentiment);
+            return true;
+        } catch(RuntimeException e){
+            logger.warn("Could not store the sentiment of review {}", job.reviewId, e);
+            return false;
+        }
+    }
+
+    // The cache is an optimization, so its failures only cost an analyzer call
+    private String cachedSentiment(String text) {
+        try{
+            return sentimentCache.get(text);
+        } catch(RuntimeException e){
+            logger.warn("Sentiment cache lookup failed", e);
+            return null;
+        }
+    }
+
+    private void cacheSentiment(String text, String sentiment) {
+        try{
+            sentimentCache.put(text, sentiment);
+        } catch(RuntimeException e){
+            logger.warn("Sentiment cache write failed", e);
+        }
+    }
+
+    private void release(Job job) {
+        job.settled = true;
+        inFlight.remove(job.reviewId);
+    }
+
+    // UNKNOWN leaves the reviews for the sweep to re-score once the backend recovers; FAILED takes them out of it
+    private void degrade(List<Job> jobs, String sentiment) {
+        for(Job job : jobs){
+            if(!sentiment.equals(job.currentSentiment)){
+                store(job, sentiment);
+            }
+            release(job);
+        }
+    }
+
+    // Failed jobs go back on the queue after a linear backoff until they run out of attempts, after which
+    // they are marked with the given sentiment. The worker moves straight on to the next batch.
+    private void retry(List<Job> jobs, String exhaustedSentiment) {
+        List<Job> retrying = new ArrayList<>();
+        List<Job> exhausted = new ArrayList<>();
+        for(Job job : jobs){
+            if(job.attempts >= maxAttempts){
+                exhausted.add(job);
+            }
+            else{
+                // The next attempt is a fresh job, so this one is never touched again once settled
+                job.settled = true;
+                retrying.add(job.nextAttempt());
+            }
+        }
+        if(!exhausted.isEmpty()){
+            degrade(exhausted, exhaustedSentiment);
+        }
+        if(retrying.isEmpty()){
+            return;
+        }
+
+        long delayMs = retryBackoffMs * (retrying.get(0).attempts - 1);
+        try{
+            retryScheduler.schedule(() -> requeue(retrying), delayMs, TimeUnit.MILLISECONDS);
+        } catch(RejectedExecutionException e){
+            // Shutting down; the sweep picks them up after restart
+            retrying.forEach(job -> inFlight.remove(job.reviewId));
+        }
+    }
+
+    private void requeue(List<Job> jobs) {
+        for(Job job : jobs){
+            if(!queue.offer(job)){
+                release(job);
+                logger.debug("Sentiment queue full, review {} left for the sweep", job.reviewId);
+            }
+        }
+    }
+
+    // Picks up reviews that were rejected by a full queue, found the backend unavailable or were pending at
+    // shutdown. Nothing is requeued while the breaker is open since it would only be rejected again.
+    @Scheduled(fixedDelayString = "${app.sentiment.sweep-interval-ms:60000}")
+    public void requeuePending() {
+        if(circuitBreaker.getState() == CircuitBreaker.State.OPEN){
+            return;
+        }
+
+        List<Review> pending = reviewRepository.findUnscoredAfter(sweepCursor, Limit.of(SWEEP_BATCH_SIZE));
+        for(Review review : pending){
+            if(!enqueue(review.getId(), review.getProduct().getId(), review.getReviewText(), review.getSentiment())){
+                return;
+            }
+            sweepCursor = review.getId();
+        }
+        if(pending.size() < SWEEP_BATCH_SIZE){
+            sweepCursor = 0L;
+        }
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        running = false;
+        workers.shutdownNow();
+        retryScheduler.shutdownNow();
+    }
+
+    private static final class Job {
+        private final Long reviewId;
+        private final Long productId;
+        private final String reviewText;
+        // Sentiment the review holds while queued; the result is only written if it still holds it
+        private final String currentSentiment;
+        private final int attempts;
+        // Set by the worker once the job is written, dropped or handed on to its next attempt
+        private boolean settled;
+
+        private Job(Long reviewId, Long productId, String reviewText, String currentSentiment, int attempts) {
+            this.reviewId = reviewId;
+            this.productId = productId;
+            this.reviewText = reviewText;
+            this.currentSentiment = currentSentiment;
+            this.attempts = attempts;
+        }
+
+        private Job nextAttempt() {
+            return new Job(reviewId, productId, reviewText, currentSentiment, attempts + 1);
+        }
+    }
+}
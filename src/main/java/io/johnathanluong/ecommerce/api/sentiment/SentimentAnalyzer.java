@@ -0,0 +1,15 @@
+package io.johnathanluong.ecommerce.api.sentiment;
+
+import java.util.List;
+
+// Scores review text as POSITIVE, NEGATIVE, NEUTRAL or MIXED. The implementation is picked with
+// app.sentiment.analyzer (comprehend by default, or lexicon for the in-process engine).
+public interface SentimentAnalyzer {
+    String analyze(String text);
+
+    // Returns one sentiment per text in the same order, with null for texts that could not be scored.
+    // Throws if the whole batch failed.
+    List<String> analyzeBatch(List<String> texts);
+
+    int maxBatchSize();
+}
@@ -0,0 +1,127 @@
+package io.johnathanluong.ecommerce.api.sentiment;
+
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.time.LocalDateTime;
+import java.util.HexFormat;
+import java.util.Locale;
+import java.util.Optional;
+import java.util.concurrent.atomic.LongAdder;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.dao.DataAccessException;
+import org.springframework.stereotype.Component;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+
+import io.johnathanluong.ecommerce.api.entity.SentimentCacheEntry;
+import io.johnathanluong.ecommerce.api.repository.SentimentCacheRepository;
+import io.micrometer.core.instrument.FunctionCounter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.MeterBinder;
+
+// Remembers detected sentiments by a hash of the normalized review text, so template reviews such as
+// "Great product!" and "great product" are only ever sent to the analyzer once. Backed by a bounded
+// in-memory LRU and, when app.sentiment.cache.persistent is set, the sentiment_cache table.
+@Component
+public class SentimentCache implements MeterBinder {
+    private static final Logger logger = LoggerFactory.getLogger(SentimentCache.class);
+
+    private final Cache<String, String> cache;
+    private final SentimentCacheRepository repository;
+    private final boolean persistent;
+    private final LongAdder hits = new LongAdder();
+    private final LongAdder misses = new LongAdder();
+
+    public SentimentCache(SentimentCacheRepository repository,
+                          @Value("${app.sentiment.cache.max-size:50000}") long maxSize,
+                          @Value("${app.sentiment.cache.persistent:false}") boolean persistent) {
+        this.repository = repository;
+        this.persistent = persistent;
+        this.cache = Caffeine.newBuilder()
+            .maximumSize(maxSize)
+            .build();
+    }
+
+    // Returns the cached sentiment for the text, or null if it has never been scored
+    public String get(String text) {
+        String key = key(text);
+        String sentiment = cache.getIfPresent(key);
+        if(sentiment == null && persistent){
+            Optional<SentimentCacheEntry> entry = repository.findById(key);
+            if(entry.isPresent()){
+                sentiment = entry.get().getSentiment();
+                cache.put(key, sentiment);
+            }
+        }
+
+        if(sentiment == null){
+            misses.increment();
+        }
+        else{
+            hits.increment();
+        }
+        return sentiment;
+    }
+
+    public void put(String text, String sentiment) {
+        String key = key(text);
+        cache.put(key, sentiment);
+        if(persistent){
+            try{
+                repository.save(new SentimentCacheEntry(key, sentiment, LocalDateTime.now()));
+            } catch(DataAccessException e){
+                // Another worker stored the same text first; the in-memory entry is enough
+                logger.debug("Could not persist sentiment cache entry {}", key, e);
+            }
+        }
+    }
+
+    public long getHits() {
+        return hits.sum();
+    }
+
+    public long getMisses() {
+        return misses.sum();
+    }
+
+    public double hitRatio() {
+        long hitCount = hits.sum();
+        long total = hitCount + misses.sum();
+        return total == 0 ? 0.0 : (double) hitCount / total;
+    }
+
+    // Case, punctuation and whitespace differences do not change the key
+    public static String key(String text) {
+        String normalized = text.toLowerCase(Locale.ROOT)
+            .replaceAll("[^\\p{L}\\p{N}]+", " ")
+            .trim();
+        try{
+            MessageDigest digest = MessageDigest.getInstance("SHA-256");
+            return HexFormat.of().formatHex(digest.digest(normalized.getBytes(StandardCharsets.UTF_8)));
+        } catch(NoSuchAlgorithmException e){
+            throw new IllegalStateException("SHA-256 is not available", e);
+        }
+    }
+
+    @Override
+    public void bindTo(MeterRegistry registry) {
+        FunctionCounter.builder("sentiment.cache", this, SentimentCache::getHits)
+                .tag("result", "hit")
+                .description("Review texts whose sentiment was served from the cache")
+                .register(registry);
+        FunctionCounter.builder("sentiment.cache", this, SentimentCache::getMisses)
+                .tag("result", "miss")
+                .description("Review texts that had to be sent to the analyzer")
+                .register(registry);
+        Gauge.builder("sentiment.cache.hit.ratio", this, SentimentCache::hitRatio)
+                .register(registry);
+        Gauge.builder("sentiment.cache.size", cache, Cache::estimatedSize)
+                .register(registry);
+    }
+}
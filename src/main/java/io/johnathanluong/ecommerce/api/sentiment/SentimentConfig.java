@@ -0,0 +1,82 @@
+package io.johnathanluong.ecommerce.api.sentiment;
+
+import java.time.Duration;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.scheduling.annotation.EnableScheduling;
+
+import io.github.resilience4j.bulkhead.Bulkhead;
+import io.github.resilience4j.bulkhead.BulkheadConfig;
+import io.github.resilience4j.bulkhead.BulkheadFullException;
+import io.github.resilience4j.bulkhead.BulkheadRegistry;
+import io.github.resilience4j.circuitbreaker.CircuitBreaker;
+import io.github.resilience4j.circuitbreaker.CircuitBreakerConfig;
+import io.github.resilience4j.circuitbreaker.CircuitBreakerRegistry;
+import software.amazon.awssdk.core.client.config.ClientOverrideConfiguration;
+import software.amazon.awssdk.regions.Region;
+import software.amazon.awssdk.services.comprehend.ComprehendClient;
+
+@Configuration
+@EnableScheduling
+public class SentimentConfig {
+    public static final String SENTIMENT_BACKEND = "sentiment";
+
+    private static final Logger logger = LoggerFactory.getLogger(SentimentConfig.class);
+
+    @Value("${app.sentiment.timeout-ms:2000}")
+    private long timeoutMs;
+
+    // Only built when Comprehend is the active analyzer, so the local engine needs no AWS setup.
+    // The call timeout covers SDK retries as well, so one slow batch can never hold a worker for long.
+    @Bean(destroyMethod = "close")
+    @ConditionalOnProperty(name = "app.sentiment.analyzer", havingValue = "comprehend", matchIfMissing = true)
+    public ComprehendClient comprehendClient() {
+        return ComprehendClient.builder()
+            .region(Region.US_EAST_1)
+            .overrideConfiguration(ClientOverrideConfiguration.builder()
+                .apiCallTimeout(Duration.ofMillis(timeoutMs))
+                .build())
+            .build();
+    }
+
+    // Registered with the shared registry so state and transitions show up under the
+    // circuitbreakers and circuitbreakerevents actuator endpoints
+    @Bean
+    public CircuitBreaker sentimentCircuitBreaker(CircuitBreakerRegistry registry,
+                                                  @Value("${app.sentiment.breaker.failure-rate-threshold:50}") float failureRateThreshold,
+                                                  @Value("${app.sentiment.breaker.sliding-window-size:20}") int slidingWindowSize,
+                                                  @Value("${app.sentiment.breaker.wait-in-open-ms:30000}") long waitInOpenMs) {
+        CircuitBreakerConfig config = CircuitBreakerConfig.custom()
+            .failureRateThreshold(failureRateThreshold)
+            .slowCallRateThreshold(failureRateThreshold)
+            .slowCallDurationThreshold(Duration.ofMillis(timeoutMs))
+            .slidingWindowSize(slidingWindowSize)
+            .minimumNumberOfCalls(Math.min(10, slidingWindowSize))
+            .waitDurationInOpenState(Duration.ofMillis(waitInOpenMs))
+            .permittedNumberOfCallsInHalfOpenState(2)
+            .automaticTransitionFromOpenToHalfOpenEnabled(true)
+            // A full bulkhead says nothing about the health of the backend
+            .ignoreExceptions(BulkheadFullException.class)
+            .build();
+
+        CircuitBreaker circuitBreaker = registry.circuitBreaker(SENTIMENT_BACKEND, config);
+        circuitBreaker.getEventPublisher().onStateTransition(event ->
+            logger.warn("Sentiment circuit breaker {}", event.getStateTransition()));
+        return circuitBreaker;
+    }
+
+    @Bean
+    public Bulkhead sentimentBulkhead(BulkheadRegistry registry,
+                                      @Value("${app.sentiment.bulkhead.max-concurrent-calls:4}") int maxConcurrentCalls) {
+        BulkheadConfig config = BulkheadConfig.custom()
+            .maxConcurrentCalls(maxConcurrentCalls)
+            .maxWaitDuration(Duration.ZERO)
+            .build();
+        return registry.bulkhead(SENTIMENT_BACKEND, config);
+    }
+}
@@ -0,0 +1,36 @@
+package io.johnathanluong.ecommerce.api.service;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Base64;
+
+// Cursors are opaque to clients: the keyset values are joined and base64url encoded
+final class CursorCodec {
+    private static final String SEPARATOR = "|";
+
+    private CursorCodec(){}
+
+    static String encode(Object... parts) {
+        StringBuilder raw = new StringBuilder();
+        for(int i = 0; i < parts.length; i++){
+            if(i > 0)
+                raw.append(SEPARATOR);
+            raw.append(parts[i]);
+        }
+        return Base64.getUrlEncoder().withoutPadding().encodeToString(raw.toString().getBytes(StandardCharsets.UTF_8));
+    }
+
+    static String[] decode(String cursor, int expectedParts) {
+        String[] parts;
+        try{
+            String raw = new String(Base64.getUrlDecoder().decode(cursor), StandardCharsets.UTF_8);
+            parts = raw.split("\\" + SEPARATOR, -1);
+        } catch(IllegalArgumentException e){
+            throw new IllegalArgumentException("Invalid cursor: " + cursor);
+        }
+
+        if(parts.length != expectedParts){
+            throw new IllegalArgumentException("Invalid cursor: " + cursor);
+        }
+        return parts;
+    }
+}
@@ -0,0 +1,15 @@
+package io.johnathanluong.ecommerce.api.service;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.List;
+
+import io.johnathanluong.ecommerce.api.dto.ImportReport;
+import io.johnathanluong.ecommerce.api.dto.SkuUpsert;
+import io.johnathanluong.ecommerce.api.dto.UpsertReport;
+
+public interface ProductBulkService {
+    ImportReport importJson(InputStream body) throws IOException;
+    ImportReport importCsv(InputStream body) throws IOException;
+    UpsertReport upsertBySku(List<SkuUpsert> rows);
+}
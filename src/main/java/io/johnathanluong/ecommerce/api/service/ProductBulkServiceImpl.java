@@ -0,0 +1,496 @@
+package io.johnathanluong.ecommerce.api.service;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.math.BigDecimal;
+import java.nio.charset.StandardCharsets;
+import java.sql.SQLException;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.cache.Cache;
+import org.springframework.cache.CacheManager;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.core.NestedExceptionUtils;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import com.fasterxml.jackson.core.JsonParseException;
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.core.JsonToken;
+import com.fasterxml.jackson.databind.JsonMappingException;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+import io.johnathanluong.ecommerce.api.config.CacheConfig;
+import io.johnathanluong.ecommerce.api.dto.ImportError;
+import io.johnathanluong.ecommerce.api.dto.ImportReport;
+import io.johnathanluong.ecommerce.api.dto.SkuUpsert;
+import io.johnathanluong.ecommerce.api.dto.SkuUpsertResult;
+import io.johnathanluong.ecommerce.api.dto.UpsertReport;
+import io.johnathanluong.ecommerce.api.entity.Product;
+import io.johnathanluong.ecommerce.api.event.ProductPatchedEvent;
+import io.johnathanluong.ecommerce.api.event.ProductSavedEvent;
+import io.johnathanluong.ecommerce.api.repository.ProductRepository;
+import io.micrometer.core.instrument.FunctionCounter;
+import io.micrometer.core.instrument.FunctionTimer;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.MeterBinder;
+import jakarta.persistence.EntityManager;
+import jakarta.persistence.PersistenceContext;
+
+// Imports stream the body and insert products in batches, each batch in its own transaction and persistence context,
+// so memory stays flat however large the import is. A batch that fails is replayed one product at a time
+// so only the offending rows are rejected.
+//
+// SKU upserts are set-based instead: one UPDATE ... FROM plus INSERT ... WHERE NOT EXISTS statement per batch,
+// however many rows it carries.
+@Service
+public class ProductBulkServiceImpl implements ProductBulkService, MeterBinder{
+    private static final Logger logger = LoggerFactory.getLogger(ProductBulkServiceImpl.class);
+
+    private final ObjectMapper objectMapper;
+    private final TransactionTemplate transactionTemplate;
+    private final ApplicationEventPublisher eventPublisher;
+    private final ProductRepository productRepository;
+    private final Cache productsCache;
+
+    private final AtomicLong upsertInserted = new AtomicLong();
+    private final AtomicLong upsertUpdated = new AtomicLong();
+    private final AtomicLong upsertUnchanged = new AtomicLong();
+    private final AtomicLong upsertRejected = new AtomicLong();
+    private final AtomicLong upsertStatements = new AtomicLong();
+    private final AtomicLong upsertNanos = new AtomicLong();
+
+    @Value("${app.products.import.batch-size:500}")
+    private int batchSize;
+
+    @Value("${app.products.import.max-reported-errors:1000}")
+    private int maxReportedErrors;
+
+    @Value("${app.products.upsert.batch-size:5000}")
+    private int upsertBatchSize;
+
+    @PersistenceContext
+    private EntityManager entityManager;
+
+    public ProductBulkServiceImpl(ObjectMapper objectMapper, PlatformTransactionManager transactionManager,
+                                  ApplicationEventPublisher eventPublisher, ProductRepository productRepository,
+                                  CacheManager cacheManager){
+        this.objectMapper = objectMapper;
+        this.transactionTemplate = new TransactionTemplate(transactionManager);
+        this.eventPublisher = eventPublisher;
+        this.productRepository = productRepository;
+        this.productsCache = cacheManager.getCache(CacheConfig.PRODUCTS_CACHE);
+    }
+
+    // Expects a JSON array of products; malformed JSON stops the import but keeps what was already committed
+    @Override
+    public ImportReport importJson(InputStream body) throws IOException {
+        ImportRun run = new ImportRun();
+        try(JsonParser parser = objectMapper.createParser(body)){
+            if(parser.nextToken() != JsonToken.START_ARRAY){
+                throw new IllegalArgumentException("Expected a JSON array of products.");
+            }
+            JsonToken token;
+            while((token = parser.nextToken()) != JsonToken.END_ARRAY){
+                if(token == null){
+                    run.abort("Unexpected end of input; import stopped.");
+                    break;
+                }
+                long row = run.nextRow();
+                if(token != JsonToken.START_OBJECT){
+                    parser.skipChildren();
+                    run.reject(row, null, "Expected a product object.");
+                    continue;
+                }
+                JsonNode node = parser.readValueAsTree();
+                try{
+                    run.add(row, objectMapper.treeToValue(node, Product.class));
+                } catch(JsonProcessingException e){
+                    run.reject(row, node.path("sku").asText(null), invalidProductMessage(e));
+                }
+            }
+        } catch(JsonParseException e){
+            run.abort("Malformed JSON: " + e.getOriginalMessage() + "; import stopped.");
+        }
+        return run.finish();
+    }
+
+    // Expects a header row naming the columns (name, description, price, category, stock, sku, brand, in any order).
+    // Fields may be double-quoted to contain commas; quoted fields cannot span lines.
+    @Override
+    public ImportReport importCsv(InputStream body) throws IOException {
+        BufferedReader reader = new BufferedReader(new InputStreamReader(body, StandardCharsets.UTF_8));
+        String header = reader.readLine();
+        if(header == null){
+            throw new IllegalArgumentException("CSV body is empty.");
+        }
+        Map<String, Integer> columns = new HashMap<>();
+        List<String> headerFields = parseCsvLine(header.replace("\uFEFF", ""));
+        for(int i = 0; i < headerFields.size(); i++){
+            columns.put(headerFields.get(i).trim().toLowerCase(Locale.ROOT), i);
+        }
+        if(!columns.containsKey("name")){
+            throw new IllegalArgumentException("CSV header must include a name column.");
+        }
+
+        ImportRun run = new ImportRun();
+        String line;
+        while((line = reader.readLine()) != null){
+            if(line.isBlank()){
+                continue;
+            }
+            long row = run.nextRow();
+            // Only the parsing is covered, so every message reported here is one of the parser's own
+            Product product;
+            try{
+                product = toProduct(parseCsvLine(line), columns);
+            } catch(IllegalArgumentException e){
+                run.reject(row, null, e.getMessage());
+                continue;
+            }
+            run.add(row, product);
+        }
+        return run.finish();
+    }
+
+    // Each batch is a single statement and commits on its own; a failing batch leaves earlier ones applied.
+    // Only the updated products are evicted from the products cache, once their batch has committed.
+    @Override
+    public UpsertReport upsertBySku(List<SkuUpsert> rows) {
+        long start = System.nanoTime();
+        List<ImportError> errors = new ArrayList<>();
+        long rejected = 0;
+        long duplicates = 0;
+
+        // A statement cannot touch the same row twice, so only the last row for each SKU is sent
+        Map<String, SkuUpsert> latest = new LinkedHashMap<>();
+        Map<String, Long> rowNumbers = new HashMap<>();
+        for(int i = 0; i < rows.size(); i++){
+            SkuUpsert row = rows.get(i);
+            String problem = validate(row);
+            if(problem != null){
+                rejected++;
+                addError(errors, new ImportError(i + 1, row.getSku(), problem));
+                continue;
+            }
+            if(latest.put(row.getSku(), row) != null){
+                duplicates++;
+            }
+            rowNumbers.put(row.getSku(), (long) i + 1);
+        }
+
+        long inserted = 0;
+        long updated = 0;
+        long unchanged = 0;
+        List<SkuUpsert> unique = new ArrayList<>(latest.values());
+        for(int from = 0; from < unique.size(); from += upsertBatchSize){
+            List<SkuUpsert> batch = unique.subList(from, Math.min(from + upsertBatchSize, unique.size()));
+            long batchStart = System.nanoTime();
+            List<SkuUpsertResult> results = productRepository.upsertBySku(batch);
+            upsertNanos.addAndGet(System.nanoTime() - batchStart);
+            upsertStatements.incrementAndGet();
+
+            for(SkuUpsertResult result : results){
+                SkuUpsert row = latest.get(result.getSku());
+                switch(result.getOutcome()){
+                    case INSERTED:
+                        inserted++;
+                        eventPublisher.publishEvent(new ProductSavedEvent(new Product(result.getProductId(), row.getName(), null,
+                            row.getPrice(), null, row.getStock(), null, row.getSku(), null)));
+                        break;
+                    case UPDATED:
+                        updated++;
+                        Product patch = new Product();
+                        patch.setPrice(row.getPrice());
+                        patch.setStock(row.getStock());
+                        eventPublisher.publishEvent(new ProductPatchedEvent(result.getProductId(), patch));
+                        productsCache.evict(result.getProductId());
+                        break;
+                    case UNCHANGED:
+                        unchanged++;
+                        break;
+                    default:
+                        rejected++;
+                        addError(errors, new ImportError(rowNumbers.get(result.getSku()), result.getSku(),
+                            "No product has this SKU and no name was given to create one."));
+                }
+            }
+        }
+
+        upsertInserted.addAndGet(inserted);
+        upsertUpdated.addAndGet(updated);
+        upsertUnchanged.addAndGet(unchanged);
+        upsertRejected.addAndGet(rejected);
+        long elapsedMillis = (System.nanoTime() - start) / 1_000_000;
+        logger.info("Upserted {} SKUs in {} ms: {} inserted, {} updated, {} unchanged, {} rejected",
+            rows.size(), elapsedMillis, inserted, updated, unchanged, rejected);
+        return new UpsertReport(rows.size(), inserted, updated, unchanged, rejected, duplicates, elapsedMillis, errors);
+    }
+
+    @Override
+    public void bindTo(MeterRegistry registry) {
+        FunctionCounter.builder("products.upsert.rows", upsertInserted, AtomicLong::get)
+            .tag("result", "inserted")
+            .register(registry);
+        FunctionCounter.builder("products.upsert.rows", upsertUpdated, AtomicLong::get)
+            .tag("result", "updated")
+            .register(registry);
+        FunctionCounter.builder("products.upsert.rows", upsertUnchanged, AtomicLong::get)
+            .tag("result", "unchanged")
+            .register(registry);
+        FunctionCounter.builder("products.upsert.rows", upsertRejected, AtomicLong::get)
+            .tag("result", "rejected")
+            .register(registry);
+        FunctionTimer.builder("products.upsert.statements", this,
+                service -> service.upsertStatements.get(), service -> service.upsertNanos.get(), TimeUnit.NANOSECONDS)
+            .description("Time spent in upsert statements")
+            .register(registry);
+    }
+
+    private void addError(List<ImportError> errors, ImportError error) {
+        if(errors.size() < maxReportedErrors){
+            errors.add(error);
+        }
+    }
+
+    private static String validate(SkuUpsert row) {
+        if(row.getSku() == null || row.getSku().isBlank())
+            return "SKU is required.";
+        if(row.getSku().length() > 10)
+            return "SKU must be at most 10 characters.";
+        if(row.getName() != null && row.getName().length() > 255)
+            return "Name must be at most 255 characters.";
+        if(row.getPrice() != null && row.getPrice().signum() < 0)
+            return "Price must not be negative.";
+        if(row.getStock() != null && row.getStock() < 0)
+            return "Stock must not be negative.";
+        return null;
+    }
+
+    private static Product toProduct(List<String> fields, Map<String, Integer> columns) {
+        Product product = new Product();
+        product.setName(field(fields, columns, "name"));
+        product.setDescription(field(fields, columns, "description"));
+        product.setCategory(field(fields, columns, "category"));
+        product.setSku(field(fields, columns, "sku"));
+        product.setBrand(field(fields, columns, "brand"));
+
+        String price = field(fields, columns, "price");
+        if(price != null){
+            try{
+                product.setPrice(new BigDecimal(price));
+            } catch(NumberFormatException e){
+                throw new IllegalArgumentException("Invalid price: " + price);
+            }
+        }
+        String stock = field(fields, columns, "stock");
+        if(stock != null){
+            try{
+                product.setStock(Integer.valueOf(stock));
+            } catch(NumberFormatException e){
+                throw new IllegalArgumentException("Invalid stock: " + stock);
+            }
+        }
+        return product;
+    }
+
+    // Missing and empty fields are both null
+    private static String field(List<String> fields, Map<String, Integer> columns, String column) {
+        Integer index = columns.get(column);
+        if(index == null || index >= fields.size()){
+            return null;
+        }
+        String value = fields.get(index).trim();
+        return value.isEmpty() ? null : value;
+    }
+
+    private static List<String> parseCsvLine(String line) {
+        List<String> fields = new ArrayList<>();
+        StringBuilder field = new StringBuilder();
+        boolean quoted = false;
+        for(int i = 0; i < line.length(); i++){
+            char c = line.charAt(i);
+            if(quoted){
+                if(c == '"' && i + 1 < line.length() && line.charAt(i + 1) == '"'){
+                    field.append('"');
+                    i++;
+                }
+                else if(c == '"'){
+                    quoted = false;
+                }
+                else{
+                    field.append(c);
+                }
+            }
+            else if(c == '"'){
+                quoted = true;
+            }
+            else if(c == ','){
+                fields.add(field.toString());
+                field.setLength(0);
+            }
+            else{
+                field.append(c);
+            }
+        }
+        if(quoted){
+            throw new IllegalArgumentException("Unterminated quoted field.");
+        }
+        fields.add(field.toString());
+        return fields;
+    }
+
+    // Names the offending field without Jackson's message, which spells out Java types and parser internals
+    private static String invalidProductMessage(JsonProcessingException e) {
+        if(e instanceof JsonMappingException){
+            List<JsonMappingException.Reference> path = ((JsonMappingException) e).getPath();
+            if(!path.isEmpty() && path.get(path.size() - 1).getFieldName() != null){
+                return "Invalid value for " + path.get(path.size() - 1).getFieldName() + ".";
+            }
+        }
+        return "Invalid product.";
+    }
+
+    // Database errors are reported by kind only; their text names tables, constraints and the rejected values
+    private static String rowFailureMessage(RuntimeException failure) {
+        Throwable cause = NestedExceptionUtils.getMostSpecificCause(failure);
+        String sqlState = cause instanceof SQLException ? ((SQLException) cause).getSQLState() : null;
+        if("23505".equals(sqlState))
+            return "A product with this SKU already exists.";
+        if("23502".equals(sqlState))
+            return "A required field is missing.";
+        if("22001".equals(sqlState))
+            return "A field is too long.";
+        if("22003".equals(sqlState))
+            return "A number is out of range.";
+        return "The product could not be saved.";
+    }
+
+    // Mirrors the column constraints on Product so bad rows are rejected before they can fail a whole batch
+    private static String validate(Product product) {
+        if(product.getName() == null || product.getName().isBlank())
+            return "Name is required.";
+        if(product.getName().length() > 255)
+            return "Name must be at most 255 characters.";
+        if(product.getSku() != null && product.getSku().length() > 10)
+            return "SKU must be at most 10 characters.";
+        if(product.getCategory() != null && product.getCategory().length() > 100)
+            return "Category must be at most 100 characters.";
+        if(product.getBrand() != null && product.getBrand().length() > 255)
+            return "Brand must be at most 255 characters.";
+        if(product.getPrice() != null && product.getPrice().signum() < 0)
+            return "Price must not be negative.";
+        if(product.getStock() != null && product.getStock() < 0)
+            return "Stock must not be negative.";
+        return null;
+    }
+
+    private void persistAll(List<Product> products) {
+        transactionTemplate.executeWithoutResult(status -> {
+            for(Product product : products){
+                entityManager.persist(product);
+            }
+            entityManager.flush();
+            entityManager.clear();
+        });
+    }
+
+    private final class ImportRun {
+        private final long start = System.nanoTime();
+        private final List<Product> batch = new ArrayList<>();
+        private final List<Long> batchRows = new ArrayList<>();
+        private final List<ImportError> errors = new ArrayList<>();
+        private long received;
+        private long imported;
+        private long failed;
+
+        private long nextRow() {
+            return ++received;
+        }
+
+        private void add(long row, Product product) {
+            String problem = validate(product);
+            if(problem != null){
+                reject(row, product.getSku(), problem);
+                return;
+            }
+            // Imports always create; ids and versions from the body are ignored
+            product.setId(null);
+            product.setVersion(0);
+            product.setCreatedAt(LocalDateTime.now());
+            batch.add(product);
+            batchRows.add(row);
+            if(batch.size() >= batchSize){
+                flush();
+            }
+        }
+
+        private void reject(long row, String sku, String message) {
+            failed++;
+            if(errors.size() < maxReportedErrors){
+                errors.add(new ImportError(row, sku, message));
+            }
+        }
+
+        // Reported against the position after the last row read; nothing past it is imported
+        private void abort(String message) {
+            errors.add(new ImportError(received + 1, null, message));
+        }
+
+        private void flush() {
+            if(batch.isEmpty()){
+                return;
+            }
+            try{
+                persistAll(batch);
+                committed(batch);
+            } catch(RuntimeException e){
+                logger.debug("Import batch of {} failed, retrying row by row", batch.size(), e);
+                for(int i = 0; i < batch.size(); i++){
+                    Product product = batch.get(i);
+                    // The failed attempt assigned an id that was rolled back with it
+                    product.setId(null);
+                    try{
+                        persistAll(List.of(product));
+                        committed(List.of(product));
+                    } catch(RuntimeException rowFailure){
+                        logger.warn("Import row {} (SKU {}) could not be saved", batchRows.get(i), product.getSku(), rowFailure);
+                        reject(batchRows.get(i), product.getSku(), rowFailureMessage(rowFailure));
+                    }
+                }
+            }
+            batch.clear();
+            batchRows.clear();
+        }
+
+        private void committed(List<Product> products) {
+            imported += products.size();
+            for(Product product : products){
+                eventPublisher.publishEvent(new ProductSavedEvent(product));
+            }
+        }
+
+        private ImportReport finish() {
+            flush();
+            long elapsedMillis = (System.nanoTime() - start) / 1_000_000;
+            logger.info("Imported {} of {} products in {} ms ({} failed)", imported, received, elapsedMillis, failed);
+            return new ImportReport(received, imported, failed, elapsedMillis, errors, failed > errors.size());
+        }
+    }
+}
@@ -1,13 +1,27 @@
 package io.johnathanluong.ecommerce.api.service;
 
 import java.util.List;
+import java.util.function.Consumer;
 
+import io.johnathanluong.ecommerce.api.dto.CursorPage;
+import io.johnathanluong.ecommerce.api.dto.FacetedProductPage;
+import io.johnathanluong.ecommerce.api.dto.ProductDetail;
+import io.johnathanluong.ecommerce.api.dto.ProductSummary;
+import io.johnathanluong.ecommerce.api.dto.StockReservationResult;
 import io.johnathanluong.ecommerce.api.entity.Product;
+import io.johnathanluong.ecommerce.api.index.FacetQuery;
 
 public interface ProductService {
     Product createProduct(Product product);
     Product getProductById(Long id);
-    List<Product> getAllProducts();
-    Product updateProduct(Long id, Product updatedProduct);
+    Product getProductBySku(String sku);
+    boolean productExists(Long id);
+    CursorPage<ProductSummary> getProducts(String cursor, Integer limit);
+    FacetedProductPage filterProducts(FacetQuery query, String cursor, Integer limit);
+    List<ProductSummary> searchProducts(String query, Integer limit);
+    long exportProducts(Consumer<ProductDetail> consumer);
+    Product updateProduct(Long id, Product updatedProduct, Long expectedVersion);
+    boolean patchProduct(Long id, Product patch, Long expectedVersion);
+    StockReservationResult reserveStock(Long id, int quantity);
     boolean deleteProduct(Long id);
 }
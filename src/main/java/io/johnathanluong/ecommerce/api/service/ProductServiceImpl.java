@@ -1,43 +1,198 @@
 package io.johnathanluong.ecommerce.api.service;
 
 import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Iterator;
 import java.util.List;
+import java.util.Map;
 import java.util.Optional;
+import java.util.function.Consumer;
+import java.util.function.Function;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
 
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.cache.Cache;
+import org.springframework.cache.CacheManager;
+import org.springframework.cache.annotation.CacheEvict;
+import org.springframework.cache.annotation.Cacheable;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.dao.InvalidDataAccessApiUsageException;
+import org.springframework.data.domain.Limit;
+import org.springframework.orm.ObjectOptimisticLockingFailureException;
 import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
 
+import io.johnathanluong.ecommerce.api.config.CacheConfig;
+import io.johnathanluong.ecommerce.api.dto.CursorPage;
+import io.johnathanluong.ecommerce.api.dto.FacetedProductPage;
+import io.johnathanluong.ecommerce.api.dto.ProductDetail;
+import io.johnathanluong.ecommerce.api.dto.ProductSummary;
+import io.johnathanluong.ecommerce.api.dto.StockReservationResult;
 import io.johnathanluong.ecommerce.api.entity.Product;
+import io.johnathanluong.ecommerce.api.event.ProductDeletedEvent;
+import io.johnathanluong.ecommerce.api.event.ProductPatchedEvent;
+import io.johnathanluong.ecommerce.api.event.ProductSavedEvent;
+import io.johnathanluong.ecommerce.api.event.ProductStockChangedEvent;
+import io.johnathanluong.ecommerce.api.exception.PreconditionFailedException;
+import io.johnathanluong.ecommerce.api.index.FacetQuery;
+import io.johnathanluong.ecommerce.api.index.FacetResult;
+import io.johnathanluong.ecommerce.api.index.ProductFacetIndex;
+import io.johnathanluong.ecommerce.api.index.ProductSearchIndex;
+import io.johnathanluong.ecommerce.api.index.ProductSkuIndex;
 import io.johnathanluong.ecommerce.api.repository.ProductRepository;
+import jakarta.persistence.EntityManager;
+import jakarta.persistence.PersistenceContext;
 @Service
 public class ProductServiceImpl implements ProductService{
     private final ProductRepository productRepository;
+    private final ReviewStatsService reviewStatsService;
+    private final ProductSearchIndex productSearchIndex;
+    private final ProductFacetIndex productFacetIndex;
+    private final ProductSkuIndex productSkuIndex;
+    private final ApplicationEventPublisher eventPublisher;
+    private final Cache productsCache;
+
+    @Value("${app.products.default-page-size:20}")
+    private int defaultPageSize;
+
+    @Value("${app.products.max-page-size:100}")
+    private int maxPageSize;
+
+    @Value("${app.search.max-results:50}")
+    private int maxSearchResults;
+
+    @PersistenceContext
+    private EntityManager entityManager;
     
-    public ProductServiceImpl(ProductRepository productRepository){
+    public ProductServiceImpl(ProductRepository productRepository, ReviewStatsService reviewStatsService,
+                              ProductSearchIndex productSearchIndex, ProductFacetIndex productFacetIndex,
+                              ProductSkuIndex productSkuIndex, ApplicationEventPublisher eventPublisher,
+                              CacheManager cacheManager){
         this.productRepository = productRepository;
+        this.reviewStatsService = reviewStatsService;
+        this.productSearchIndex = productSearchIndex;
+        this.productFacetIndex = productFacetIndex;
+        this.productSkuIndex = productSkuIndex;
+        this.eventPublisher = eventPublisher;
+        this.productsCache = cacheManager.getCache(CacheConfig.PRODUCTS_CACHE);
     }
 
     @Override
     public Product createProduct(Product product){
         product.setCreatedAt(LocalDateTime.now());
-        return productRepository.save(product);
+        Product createdProduct = productRepository.save(product);
+        eventPublisher.publishEvent(new ProductSavedEvent(createdProduct));
+        return createdProduct;
     }
     
     @Override
-    public List<Product> getAllProducts() {
-        return productRepository.findAll();
+    public CursorPage<ProductSummary> getProducts(String cursor, Integer limit) {
+        long afterId = 0L;
+        if(cursor != null && !cursor.isBlank()){
+            afterId = Long.parseLong(CursorCodec.decode(cursor, 1)[0]);
+        }
+        int pageSize = resolvePageSize(limit);
+
+        // Fetch one extra row to know whether another page exists
+        List<ProductSummary> products = productRepository.findSummariesAfter(afterId, Limit.of(pageSize + 1));
+        String nextCursor = null;
+        if(products.size() > pageSize){
+            products = products.subList(0, pageSize);
+            nextCursor = CursorCodec.encode(products.get(pageSize - 1).getId());
+        }
+        return new CursorPage<>(products, nextCursor);
+    }
+
+    @Override
+    public FacetedProductPage filterProducts(FacetQuery query, String cursor, Integer limit) {
+        if(query.getMinPrice() != null && query.getMaxPrice() != null && query.getMinPrice().compareTo(query.getMaxPrice()) > 0){
+            throw new IllegalArgumentException("Minimum price must not exceed maximum price.");
+        }
+        Long afterId = null;
+        if(cursor != null && !cursor.isBlank()){
+            afterId = Long.parseLong(CursorCodec.decode(cursor, 1)[0]);
+        }
+        int pageSize = resolvePageSize(limit);
+
+        FacetResult result = productFacetIndex.search(query, afterId, pageSize);
+        List<Long> ids = result.getProductIds();
+        String nextCursor = result.hasMore() ? CursorCodec.encode(ids.get(ids.size() - 1)) : null;
+        return new FacetedProductPage(findSummariesInOrder(ids), nextCursor, result.getTotal(), result.getFacets());
+    }
+
+    @Override
+    public List<ProductSummary> searchProducts(String query, Integer limit) {
+        if(query == null || query.isBlank()){
+            throw new IllegalArgumentException("Search query must not be empty.");
+        }
+        if(limit != null && limit < 1){
+            throw new IllegalArgumentException("Limit must be positive.");
+        }
+        int resultLimit = limit == null ? maxSearchResults : Math.min(limit, maxSearchResults);
+
+        return findSummariesInOrder(productSearchIndex.search(query, resultLimit));
+    }
+
+    @Override
+    @Transactional(readOnly = true)
+    public long exportProducts(Consumer<ProductDetail> consumer) {
+        long exported = 0;
+        try(Stream<Product> products = productRepository.streamAllOrderById()){
+            Iterator<Product> iterator = products.iterator();
+            while(iterator.hasNext()){
+                consumer.accept(ProductDetail.from(iterator.next()));
+                exported++;
+
+                // Detach what has already been written so the persistence context stays flat
+                if(exported % ProductRepository.STREAM_FETCH_SIZE == 0){
+                    entityManager.clear();
+                }
+            }
+        }
+        return exported;
     }
     
     @Override
+    @Cacheable(value = CacheConfig.PRODUCTS_CACHE, key = "#id", unless = "#result == null")
     public Product getProductById(Long id) {
         Optional<Product> product = productRepository.findById(id);
         return product.orElse(null);
     }
     
     @Override
-    public Product updateProduct(Long id, Product updatedProduct) {
+    public Product getProductBySku(String sku) {
+        Long id = productSkuIndex.resolve(sku);
+        if(id == null){
+            return null;
+        }
+        Product product = getCachedProduct(id);
+        if(product != null && sku.equals(product.getSku())){
+            return product;
+        }
+
+        // The index was behind a write made outside the service; trust the column and repair the entry
+        productSkuIndex.evict(sku, id);
+        productsCache.evict(id);
+        id = productSkuIndex.resolve(sku);
+        return id == null ? null : getCachedProduct(id);
+    }
+
+    @Override
+    public boolean productExists(Long id) {
+        return productRepository.existsById(id);
+    }
+    
+    @Override
+    @CacheEvict(value = CacheConfig.PRODUCTS_CACHE, key = "#id")
+    public Product updateProduct(Long id, Product updatedProduct, Long expectedVersion) {
         Optional<Product> product = productRepository.findById(id);
         if(product.isPresent()){
             Product existingProduct = product.get();
+            // A null expected version is an unconditional update
+            if(expectedVersion != null && existingProduct.getVersion() != expectedVersion){
+                throw new PreconditionFailedException("Product " + id + " is at version " + existingProduct.getVersion() + ", not " + expectedVersion + ".");
+            }
             if(updatedProduct.getName() != null)
                 existingProduct.setName(updatedProduct.getName());
             if(updatedProduct.getDescription() != null)
@@ -52,20 +207,106 @@ public class ProductServiceImpl implements ProductService{
                 existingProduct.setSku(updatedProduct.getSku());
             if(updatedProduct.getBrand() != null)
                 existingProduct.setBrand(updatedProduct.getBrand());
-            return productRepository.save(existingProduct);
+            Product savedProduct;
+            try{
+                // The version is checked again by the UPDATE itself, which catches writes that land after the read
+                savedProduct = productRepository.save(existingProduct);
+            } catch(ObjectOptimisticLockingFailureException e){
+                throw new PreconditionFailedException("Product " + id + " was modified concurrently.");
+            }
+            eventPublisher.publishEvent(new ProductSavedEvent(savedProduct));
+            return savedProduct;
         }
         
         return null;
     }
     
     @Override
+    @CacheEvict(value = CacheConfig.PRODUCTS_CACHE, key = "#id")
+    public boolean patchProduct(Long id, Product patch, Long expectedVersion) {
+        int patched;
+        try{
+            patched = productRepository.patch(id, patch, expectedVersion);
+        } catch(InvalidDataAccessApiUsageException e){
+            // Repository exception translation wraps the empty-patch IllegalArgumentException; callers map that to 400
+            throw new IllegalArgumentException(e.getMostSpecificCause().getMessage(), e);
+        }
+        if(patched == 0){
+            // Only a refused patch looks the product up, to tell a stale version from a missing product
+            if(expectedVersion != null && productRepository.existsById(id)){
+                throw new PreconditionFailedException("Product " + id + " is no longer at version " + expectedVersion + ".");
+            }
+            return false;
+        }
+        eventPublisher.publishEvent(new ProductPatchedEvent(id, patch));
+        return true;
+    }
+
+    @Override
+    @CacheEvict(value = CacheConfig.PRODUCTS_CACHE, key = "#id")
+    public StockReservationResult reserveStock(Long id, int quantity) {
+        if(quantity < 1){
+            throw new IllegalArgumentException("Quantity must be positive.");
+        }
+        if(productRepository.decrementStock(id, quantity) == 1){
+            eventPublisher.publishEvent(new ProductStockChangedEvent(id, -quantity));
+            return StockReservationResult.RESERVED;
+        }
+        // Only the failure path pays for a second query
+        return productRepository.existsById(id) ? StockReservationResult.INSUFFICIENT_STOCK : StockReservationResult.NOT_FOUND;
+    }
+
+    @Override
+    @Transactional
+    @CacheEvict(value = CacheConfig.PRODUCTS_CACHE, key = "#id")
     public boolean deleteProduct(Long id) {
         if(productRepository.existsById(id)){
             productRepository.deleteById(id);
+            reviewStatsService.deleteStats(id);
+            eventPublisher.publishEvent(new ProductDeletedEvent(id));
             return true;
         }
         else{
             return false;
         }
     }
+
+    // Same entries as getProductById, which a call from inside this class would bypass the cache proxy for
+    private Product getCachedProduct(Long id) {
+        Product product = productsCache.get(id, Product.class);
+        if(product == null){
+            product = productRepository.findById(id).orElse(null);
+            if(product != null){
+                productsCache.put(id, product);
+            }
+        }
+        return product;
+    }
+
+    // The indexes pick and order the products, the database supplies current values; products deleted in between are skipped
+    private List<ProductSummary> findSummariesInOrder(List<Long> ids) {
+        if(ids.isEmpty()){
+            return new ArrayList<>();
+        }
+        Map<Long, ProductSummary> summaries = productRepository.findSummariesByIdIn(ids).stream()
+            .collect(Collectors.toMap(ProductSummary::getId, Function.identity()));
+        List<ProductSummary> results = new ArrayList<>(ids.size());
+        for(Long id : ids){
+            ProductSummary summary = summaries.get(id);
+            if(summary != null){
+                results.add(summary);
+            }
+        }
+        return results;
+    }
+
+    private int resolvePageSize(Integer limit) {
+        if(limit == null){
+            return Math.min(defaultPageSize, maxPageSize);
+        }
+        if(limit < 1){
+            throw new IllegalArgumentException("Limit must be positive.");
+        }
+        return Math.min(limit, maxPageSize);
+    }
 }
\ No newline at end of file
@@ -2,7 +2,9 @@ package io.johnathanluong.ecommerce.api.service;
 
 import java.util.List;
 
-import io.johnathanluong.ecommerce.api.entity.Product;
+import io.johnathanluong.ecommerce.api.dto.CursorPage;
+import io.johnathanluong.ecommerce.api.dto.ReviewSort;
+import io.johnathanluong.ecommerce.api.dto.ReviewView;
 import io.johnathanluong.ecommerce.api.entity.Review;
 import io.johnathanluong.ecommerce.api.entity.User;
 
@@ -10,7 +12,8 @@ import io.johnathanluong.ecommerce.api.entity.User;
 public interface ReviewService {
     Review createReview(Review review, User user);
     Review getReviewById(Long id);
-    List<Review> getAllReviewsOfProduct(Product product);
+    CursorPage<ReviewView> getReviewsOfProduct(Long productId, ReviewSort sort, String cursor, Integer limit);
+    List<ReviewView> getAllReviewsOfProduct(Long productId);
     Review updateReview(Long id, Review updatedReview, User user);
-    void deleteReview(Long id, User user);
+    boolean deleteReview(Long id, User user);
 }
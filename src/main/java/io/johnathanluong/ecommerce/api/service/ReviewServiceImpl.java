@@ -1,52 +1,118 @@
 package io.johnathanluong.ecommerce.api.service;
 
 import java.time.LocalDateTime;
+import java.time.format.DateTimeParseException;
 import java.util.List;
+import java.util.Objects;
 import java.util.Optional;
 
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.data.domain.Limit;
 import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
 
-import io.johnathanluong.ecommerce.api.entity.Product;
+import io.johnathanluong.ecommerce.api.dto.CursorPage;
+import io.johnathanluong.ecommerce.api.dto.ReviewSort;
+import io.johnathanluong.ecommerce.api.dto.ReviewView;
 import io.johnathanluong.ecommerce.api.entity.Review;
 import io.johnathanluong.ecommerce.api.entity.User;
 import io.johnathanluong.ecommerce.api.exception.AuthorizationException;
 import io.johnathanluong.ecommerce.api.repository.ReviewRepository;
-import software.amazon.awssdk.regions.Region;
-import software.amazon.awssdk.services.comprehend.ComprehendClient;
-import software.amazon.awssdk.services.comprehend.model.DetectSentimentRequest;
-import software.amazon.awssdk.services.comprehend.model.DetectSentimentResponse;
-import software.amazon.awssdk.services.comprehend.model.SentimentType;
+import io.johnathanluong.ecommerce.api.sentiment.SentimentAnalysisPipeline;
+import io.johnathanluong.ecommerce.api.sentiment.SentimentCache;
 
 @Service
 public class ReviewServiceImpl implements ReviewService{
+    private static final Logger logger = LoggerFactory.getLogger(ReviewServiceImpl.class);
+
     private final ReviewRepository reviewRepository;
-    private final ComprehendClient comprehendClient;
+    private final SentimentAnalysisPipeline sentimentPipeline;
+    private final SentimentCache sentimentCache;
+    private final ReviewStatsService reviewStatsService;
+
+    @Value("${app.reviews.default-page-size:20}")
+    private int defaultPageSize;
+
+    @Value("${app.reviews.max-page-size:100}")
+    private int maxPageSize;
 
-    public ReviewServiceImpl(ReviewRepository reviewRepository){
+    @Value("${app.reviews.backfill-sentiment-on-startup:true}")
+    private boolean backfillSentimentOnStartup;
+
+    public ReviewServiceImpl(ReviewRepository reviewRepository, SentimentAnalysisPipeline sentimentPipeline,
+                             SentimentCache sentimentCache, ReviewStatsService reviewStatsService){
         this.reviewRepository = reviewRepository;
-        this.comprehendClient = ComprehendClient.builder().region(Region.US_EAST_1).build();
+        this.sentimentPipeline = sentimentPipeline;
+        this.sentimentCache = sentimentCache;
+        this.reviewStatsService = reviewStatsService;
     }
 
     @Override
+    @Transactional
     public Review createReview(Review review, User user) {
         review.setCreatedAt(LocalDateTime.now());
         review.setUser(user);
+        // Known texts are scored from the cache, anything else in the background so the request only pays for the insert
+        String cachedSentiment = sentimentCache.get(review.getReviewText());
+        review.setSentiment(cachedSentiment != null ? cachedSentiment : SentimentAnalysisPipeline.PENDING);
 
-        DetectSentimentRequest detectSentimentRequest = DetectSentimentRequest.builder()
-            .text(review.getReviewText())
-            .languageCode("en")
-            .build();
-        
-        DetectSentimentResponse detectSentimentResponse = comprehendClient.detectSentiment(detectSentimentRequest);
-        SentimentType sentimentType = detectSentimentResponse.sentiment();
-        review.setSentiment(sentimentType.toString());
-        
-        return reviewRepository.save(review);
+        Review createdReview = reviewRepository.save(review);
+        Long productId = createdReview.getProduct().getId();
+        reviewStatsService.recordCreated(productId, createdReview.getSentiment(), createdReview.getCreatedAt());
+        if(cachedSentiment == null){
+            sentimentPipeline.submit(createdReview.getId(), productId, createdReview.getReviewText());
+        }
+        return createdReview;
+    }
+
+    @Override
+    public CursorPage<ReviewView> getReviewsOfProduct(Long productId, ReviewSort sort, String cursor, Integer limit) {
+        int pageSize = resolvePageSize(limit);
+        // Fetch one extra row to know whether another page exists
+        Limit fetchLimit = Limit.of(pageSize + 1);
+        boolean firstPage = cursor == null || cursor.isBlank();
+
+        List<ReviewView> reviews;
+        if(sort == ReviewSort.SENTIMENT){
+            if(firstPage){
+                reviews = reviewRepository.findSentimentOrdered(productId, fetchLimit);
+            }
+            else{
+                String[] parts = CursorCodec.decode(cursor, 3);
+                reviews = reviewRepository.findSentimentOrderedAfter(productId, parseSentiment(parts[0], cursor), parseCreatedAt(parts[1], cursor),
+                    parseId(parts[2], cursor), fetchLimit);
+            }
+        }
+        else{
+            if(firstPage){
+                reviews = reviewRepository.findNewest(productId, fetchLimit);
+            }
+            else{
+                String[] parts = CursorCodec.decode(cursor, 2);
+                reviews = reviewRepository.findNewestAfter(productId, parseCreatedAt(parts[0], cursor),
+                    parseId(parts[1], cursor), fetchLimit);
+            }
+        }
+
+        String nextCursor = null;
+        if(reviews.size() > pageSize){
+            reviews = reviews.subList(0, pageSize);
+            ReviewView last = reviews.get(pageSize - 1);
+            nextCursor = sort == ReviewSort.SENTIMENT
+                ? CursorCodec.encode(last.getSentiment(), last.getCreatedAt(), last.getId())
+                : CursorCodec.encode(last.getCreatedAt(), last.getId());
+        }
+        return new CursorPage<>(reviews, nextCursor);
     }
 
+    // Unpaged, newest first; same single statement as a listing page
     @Override
-    public List<Review> getAllReviewsOfProduct(Product product) {
-        return reviewRepository.findAllByProduct(product);
+    public List<ReviewView> getAllReviewsOfProduct(Long productId) {
+        return reviewRepository.findNewest(productId, Limit.unlimited());
     }
 
     @Override
@@ -60,46 +126,105 @@ public class ReviewServiceImpl implements ReviewService{
     }
     
     @Override
+    @Transactional
     public Review updateReview(Long id, Review updatedReview, User currentUser) {
-        Review existingReview = reviewRepository.findById(id)
-                .orElseThrow(() -> new RuntimeException("Review not found with id: " + id));
+        Review existingReview = reviewRepository.findById(id).orElse(null);
+        if(existingReview == null){
+            return null;
+        }
 
         if (!isReviewOwner(existingReview, currentUser)) {
             throw new AuthorizationException("You are not authorized to edit this review.");
         }
 
+        String previousSentiment = existingReview.getSentiment();
         if(updatedReview.getReviewText() != null)
             existingReview.setReviewText(updatedReview.getReviewText());
 
+        String cachedSentiment = null;
         if (updatedReview.getReviewText() != null) {
-            DetectSentimentRequest detectSentimentRequest = DetectSentimentRequest.builder()
-                    .text(existingReview.getReviewText())
-                    .languageCode("en")
-                    .build();
-            DetectSentimentResponse detectSentimentResponse = comprehendClient.detectSentiment(detectSentimentRequest);
-            SentimentType sentimentType = detectSentimentResponse.sentiment();
-            existingReview.setSentiment(sentimentType.toString());
+            cachedSentiment = sentimentCache.get(updatedReview.getReviewText());
+            existingReview.setSentiment(cachedSentiment != null ? cachedSentiment : SentimentAnalysisPipeline.PENDING);
         } else if (updatedReview.getSentiment() != null) {
             existingReview.setSentiment(updatedReview.getSentiment());
         }
 
-
-        return reviewRepository.save(existingReview);
+        Review savedReview = reviewRepository.save(existingReview);
+        Long productId = savedReview.getProduct().getId();
+        if (!Objects.equals(previousSentiment, savedReview.getSentiment())) {
+            reviewStatsService.recordSentimentChanged(productId, previousSentiment, savedReview.getSentiment());
+        }
+        if (updatedReview.getReviewText() != null && cachedSentiment == null) {
+            sentimentPipeline.submit(savedReview.getId(), productId, savedReview.getReviewText());
+        }
+        return savedReview;
     }
     
     @Override
-    public void deleteReview(Long id, User user) {
-        Review review = reviewRepository.findById(id)
-            .orElseThrow(() -> new RuntimeException("Review not found with id: " + id));
-        
+    @Transactional
+    public boolean deleteReview(Long id, User user) {
+        Review review = reviewRepository.findById(id).orElse(null);
+        if(review == null){
+            return false;
+        }
+
         if(!isReviewOwner(review, user)){
             throw new AuthorizationException("You are not authorized to delete this review.");
         }
         
         reviewRepository.delete(review);
+        reviewStatsService.recordDeleted(review.getProduct().getId(), review.getSentiment());
+        return true;
     }
     
+    // Gives legacy reviews without a sentiment one the sentiment sort and the sweep both understand
+    @EventListener(ApplicationReadyEvent.class)
+    @Transactional
+    public void backfillSentiment() {
+        if(!backfillSentimentOnStartup){
+            return;
+        }
+        int reviews = reviewRepository.markMissingSentimentsPending();
+        if(reviews > 0){
+            logger.info("Marked {} reviews without a sentiment {}", reviews, SentimentAnalysisPipeline.PENDING);
+        }
+    }
+
     private boolean isReviewOwner(Review review, User user) {
         return review.getUser().getId().equals(user.getId());
     }
+
+    private int resolvePageSize(Integer limit) {
+        if(limit == null){
+            return Math.min(defaultPageSize, maxPageSize);
+        }
+        if(limit < 1){
+            throw new IllegalArgumentException("Limit must be positive.");
+        }
+        return Math.min(limit, maxPageSize);
+    }
+
+    // Every stored review has a sentiment, so a missing one can only come from a forged or corrupted cursor
+    private static String parseSentiment(String value, String cursor) {
+        if(value.isEmpty() || value.equals("null")){
+            throw new IllegalArgumentException("Invalid cursor: " + cursor);
+        }
+        return value;
+    }
+
+    private static LocalDateTime parseCreatedAt(String value, String cursor) {
+        try{
+            return LocalDateTime.parse(value);
+        } catch(DateTimeParseException e){
+            throw new IllegalArgumentException("Invalid cursor: " + cursor);
+        }
+    }
+
+    private static Long parseId(String value, String cursor) {
+        try{
+            return Long.valueOf(value);
+        } catch(NumberFormatException e){
+            throw new IllegalArgumentException("Invalid cursor: " + cursor);
+        }
+    }
 }
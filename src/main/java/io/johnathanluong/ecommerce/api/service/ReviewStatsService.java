@@ -0,0 +1,14 @@
+package io.johnathanluong.ecommerce.api.service;
+
+import java.time.LocalDateTime;
+
+import io.johnathanluong.ecommerce.api.entity.ProductReviewStats;
+
+public interface ReviewStatsService {
+    ProductReviewStats getStats(Long productId);
+    void recordCreated(Long productId, String sentiment, LocalDateTime createdAt);
+    void recordSentimentChanged(Long productId, String previousSentiment, String sentiment);
+    void recordDeleted(Long productId, String sentiment);
+    boolean updateSentiment(Long reviewId, Long productId, String reviewText, String expectedSentiment, String sentiment);
+    void deleteStats(Long productId);
+}
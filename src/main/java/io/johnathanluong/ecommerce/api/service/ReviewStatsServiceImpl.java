@@ -0,0 +1,105 @@
+package io.johnathanluong.ecommerce.api.service;
+
+import java.time.LocalDateTime;
+import java.util.Objects;
+
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
+
+import io.johnathanluong.ecommerce.api.entity.ProductReviewStats;
+import io.johnathanluong.ecommerce.api.repository.ProductReviewStatsRepository;
+import io.johnathanluong.ecommerce.api.repository.ReviewRepository;
+
+// Every record* call joins the caller's transaction, so the counts commit or roll back with the review write
+@Service
+public class ReviewStatsServiceImpl implements ReviewStatsService{
+    private static final int POSITIVE = 0;
+    private static final int NEGATIVE = 1;
+    private static final int NEUTRAL = 2;
+    private static final int MIXED = 3;
+    private static final int UNSCORED = 4;
+
+    private final ProductReviewStatsRepository statsRepository;
+    private final ReviewRepository reviewRepository;
+
+    public ReviewStatsServiceImpl(ProductReviewStatsRepository statsRepository, ReviewRepository reviewRepository){
+        this.statsRepository = statsRepository;
+        this.reviewRepository = reviewRepository;
+    }
+
+    // Products whose reviews predate the stats table get their row on first read
+    @Override
+    @Transactional
+    public ProductReviewStats getStats(Long productId) {
+        ProductReviewStats stats = statsRepository.findById(productId).orElse(null);
+        if(stats == null && statsRepository.insertFromReviews(productId) > 0){
+            stats = statsRepository.findById(productId).orElse(null);
+        }
+        return stats;
+    }
+
+    @Override
+    @Transactional
+    public void recordCreated(Long productId, String sentiment, LocalDateTime createdAt) {
+        long[] counts = new long[5];
+        counts[bucket(sentiment)]++;
+        applyDelta(productId, counts, 1, createdAt);
+    }
+
+    @Override
+    @Transactional
+    public void recordSentimentChanged(Long productId, String previousSentiment, String sentiment) {
+        int from = bucket(previousSentiment);
+        int to = bucket(sentiment);
+        if(from == to){
+            return;
+        }
+        long[] counts = new long[5];
+        counts[from]--;
+        counts[to]++;
+        applyDelta(productId, counts, 0, null);
+    }
+
+    @Override
+    @Transactional
+    public void recordDeleted(Long productId, String sentiment) {
+        long[] counts = new long[5];
+        counts[bucket(sentiment)]--;
+        applyDelta(productId, counts, -1, null);
+        statsRepository.refreshLastReviewAt(productId);
+    }
+
+    // Used by the sentiment pipeline: the review and its product's counts change together or not at all
+    @Override
+    @Transactional
+    public boolean updateSentiment(Long reviewId, Long productId, String reviewText, String expectedSentiment, String sentiment) {
+        if(reviewRepository.updateSentiment(reviewId, reviewText, expectedSentiment, sentiment) == 0){
+            return false;
+        }
+        recordSentimentChanged(productId, expectedSentiment, sentiment);
+        return true;
+    }
+
+    @Override
+    @Transactional
+    public void deleteStats(Long productId) {
+        statsRepository.deleteById(productId);
+    }
+
+    private void applyDelta(Long productId, long[] counts, long total, LocalDateTime reviewedAt) {
+        statsRepository.applyDelta(productId, counts[POSITIVE], counts[NEGATIVE], counts[NEUTRAL], counts[MIXED],
+            counts[UNSCORED], total, reviewedAt);
+    }
+
+    private static int bucket(String sentiment) {
+        if(Objects.equals(sentiment, "POSITIVE"))
+            return POSITIVE;
+        if(Objects.equals(sentiment, "NEGATIVE"))
+            return NEGATIVE;
+        if(Objects.equals(sentiment, "NEUTRAL"))
+            return NEUTRAL;
+        if(Objects.equals(sentiment, "MIXED"))
+            return MIXED;
+        return UNSCORED;
+    }
+}
@@ -2,11 +2,11 @@ package io.johnathanluong.ecommerce.api.service;
 
 import io.johnathanluong.ecommerce.api.entity.User;
 import io.johnathanluong.ecommerce.api.repository.UserRepository;
+import io.johnathanluong.ecommerce.api.security.UserPrincipal;
 import org.springframework.security.core.userdetails.UserDetails;
 import org.springframework.security.core.userdetails.UserDetailsService;
 import org.springframework.security.core.userdetails.UsernameNotFoundException;
 import org.springframework.stereotype.Service;
-import org.springframework.security.core.userdetails.User.UserBuilder;
 import org.springframework.security.core.authority.AuthorityUtils;
 
 @Service
@@ -23,10 +23,6 @@ public class UserDetailsServiceImpl implements UserDetailsService {
         User user = userRepository.findByUsernameOrEmail(usernameOrEmail, usernameOrEmail)
                 .orElseThrow(() -> new UsernameNotFoundException("User not found with username/email: " + usernameOrEmail));
 
-        UserBuilder builder = org.springframework.security.core.userdetails.User.withUsername(user.getUsername());
-        builder.password(user.getPassword()); 
-        builder.authorities(AuthorityUtils.NO_AUTHORITIES);
-
-        return builder.build();
+        return new UserPrincipal(user.getId(), user.getUsername(), user.getPassword(), AuthorityUtils.NO_AUTHORITIES);
     }
 }
\ No newline at end of file
@@ -0,0 +1,13 @@
+-- Runs before JPA starts: creates the products id sequence and moves it past every id already in the table,
+-- so pooled ids never collide with products inserted before the sequence existed.
+-- Sequence name and increment must match Product.ID_SEQUENCE and Product.ID_ALLOCATION_SIZE.
+do $$
+begin
+    create sequence if not exists products_seq start with 1 increment by 50;
+    if to_regclass('products') is not null then
+        perform setval('products_seq', greatest(
+            (select coalesce(max(id), 0) from products) + 50,
+            (select last_value from products_seq)));
+    end if;
+end
+$$
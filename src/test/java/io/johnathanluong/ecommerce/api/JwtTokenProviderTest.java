@@ -1,6 +1,7 @@
 package io.johnathanluong.ecommerce.api;
 
 import io.johnathanluong.ecommerce.api.security.JwtTokenProvider;
+import io.johnathanluong.ecommerce.api.security.UserPrincipal;
 import io.jsonwebtoken.Claims;
 import io.jsonwebtoken.Jwts;
 import io.jsonwebtoken.io.Decoders;
@@ -9,9 +10,10 @@ import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
 import org.mockito.Mock;
 import org.mockito.MockitoAnnotations;
+import org.springframework.security.authentication.UsernamePasswordAuthenticationToken;
 import org.springframework.security.core.Authentication;
+import org.springframework.security.core.authority.AuthorityUtils;
 import org.springframework.security.core.userdetails.UserDetails;
-import org.springframework.test.util.ReflectionTestUtils;
 
 import java.util.Date;
 
@@ -34,9 +36,7 @@ class JwtTokenProviderTest {
     @BeforeEach
     void setUp() {
         MockitoAnnotations.openMocks(this);
-        jwtTokenProvider = new JwtTokenProvider();
-        ReflectionTestUtils.setField(jwtTokenProvider, "jwtSecret", secretKey);
-        ReflectionTestUtils.setField(jwtTokenProvider, "jwtExpirationInMs", 3600000);
+        jwtTokenProvider = new JwtTokenProvider(secretKey, 3600000, "primary", "", 10000);
         when(mockAuthentication.getName()).thenReturn("testUser"); 
         when(mockUserDetails.getUsername()).thenReturn("testUser");
     }
@@ -93,6 +93,59 @@ class JwtTokenProviderTest {
         assertFalse(jwtTokenProvider.validateToken(tamperedToken));
     }
 
+    @Test
+    void parseClaims_ValidToken_ReturnsSubjectAndExpiry() {
+        String token = jwtTokenProvider.generateToken(mockAuthentication);
+        Claims claims = jwtTokenProvider.parseClaims(token);
+        assertNotNull(claims);
+        assertEquals("testUser", claims.getSubject());
+        assertTrue(claims.getExpiration().after(new Date()));
+    }
+
+    @Test
+    void parseClaims_MalformedToken_ReturnsNull() {
+        assertNull(jwtTokenProvider.parseClaims("malformed.jwt.token"));
+    }
+
+    @Test
+    void getPrincipalFromClaims_TokenForUserPrincipal_RestoresIdAndAuthorities() {
+        UserPrincipal principal = new UserPrincipal(42L, "testUser", "password", AuthorityUtils.createAuthorityList("ROLE_ADMIN"));
+        String token = jwtTokenProvider.generateToken(new UsernamePasswordAuthenticationToken(principal, null, principal.getAuthorities()));
+
+        UserPrincipal restored = jwtTokenProvider.getPrincipalFromClaims(jwtTokenProvider.parseClaims(token));
+        assertNotNull(restored);
+        assertEquals(42L, restored.getId());
+        assertEquals("testUser", restored.getUsername());
+        assertEquals("ROLE_ADMIN", restored.getAuthorities().iterator().next().getAuthority());
+    }
+
+    @Test
+    void getPrincipalFromClaims_TokenWithoutUserId_ReturnsNull() {
+        String token = jwtTokenProvider.generateToken(mockAuthentication);
+        assertNull(jwtTokenProvider.getPrincipalFromClaims(jwtTokenProvider.parseClaims(token)));
+    }
+
+    @Test
+    void validateToken_SignedWithRetiredKey_ReturnsTrue() {
+        String newSecret = "cm90YXRlZHNlY3JldGtleWZvcnRoZWFwaWJ1dGxvbmdlcmVub3VnaA==";
+        JwtTokenProvider rotatedProvider = new JwtTokenProvider(newSecret, 3600000, "next", "primary:" + secretKey, 10000);
+
+        String oldToken = jwtTokenProvider.generateToken(mockAuthentication);
+        assertTrue(rotatedProvider.validateToken(oldToken));
+        assertEquals("testUser", rotatedProvider.getUsernameFromJwt(oldToken));
+    }
+
+    @Test
+    void validateToken_UnknownKeyId_ReturnsFalse() {
+        String token = Jwts.builder()
+                .header().keyId("unknown").and()
+                .subject("testUser")
+                .expiration(new Date(System.currentTimeMillis() + 3600000))
+                .signWith(getSignInKey())
+                .compact();
+        assertFalse(jwtTokenProvider.validateToken(token));
+    }
+
     private SecretKey getSignInKey() {
         return Keys.hmacShaKeyFor(Decoders.BASE64.decode(secretKey));
     }
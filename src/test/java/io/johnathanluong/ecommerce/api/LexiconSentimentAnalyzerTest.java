@@ -0,0 +1,43 @@
+package io.johnathanluong.ecommerce.api;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+import java.util.Arrays;
+import java.util.List;
+
+import org.junit.jupiter.api.Test;
+
+import io.johnathanluong.ecommerce.api.sentiment.LexiconSentimentAnalyzer;
+
+class LexiconSentimentAnalyzerTest {
+
+    private final LexiconSentimentAnalyzer analyzer = new LexiconSentimentAnalyzer();
+
+    @Test
+    void testPositiveText() {
+        assertEquals("POSITIVE", analyzer.analyze("Great product, fast shipping!"));
+    }
+
+    @Test
+    void testNegativeText() {
+        assertEquals("NEGATIVE", analyzer.analyze("Terrible. It broke after a day."));
+    }
+
+    @Test
+    void testNegationFlipsPolarity() {
+        assertEquals("NEGATIVE", analyzer.analyze("This is not good at all"));
+    }
+
+    @Test
+    void testNeutralAndMixedText() {
+        assertEquals("NEUTRAL", analyzer.analyze("Arrived on Tuesday."));
+        assertEquals("MIXED", analyzer.analyze("Great sound but the strap is flimsy"));
+    }
+
+    @Test
+    void testBatchKeepsOrder() {
+        List<String> sentiments = analyzer.analyzeBatch(Arrays.asList("love it", "waste of money", "it is blue"));
+
+        assertEquals(Arrays.asList("POSITIVE", "NEGATIVE", "NEUTRAL"), sentiments);
+    }
+}
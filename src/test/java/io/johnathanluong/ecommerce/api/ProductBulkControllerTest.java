@@ -0,0 +1,82 @@
+package io.johnathanluong.ecommerce.api;
+
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyList;
+import static org.mockito.Mockito.when;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.*;
+
+import java.io.InputStream;
+import java.util.Arrays;
+
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.autoconfigure.security.servlet.SecurityAutoConfiguration;
+import org.springframework.boot.test.autoconfigure.web.servlet.WebMvcTest;
+import org.springframework.http.MediaType;
+import org.springframework.test.context.bean.override.mockito.MockitoBean;
+import org.springframework.test.web.servlet.MockMvc;
+import org.springframework.test.web.servlet.request.MockMvcRequestBuilders;
+
+import io.johnathanluong.ecommerce.api.controller.ProductBulkControllerImpl;
+import io.johnathanluong.ecommerce.api.dto.ImportError;
+import io.johnathanluong.ecommerce.api.dto.ImportReport;
+import io.johnathanluong.ecommerce.api.dto.UpsertReport;
+import io.johnathanluong.ecommerce.api.security.JwtTokenProvider;
+import io.johnathanluong.ecommerce.api.service.ProductBulkService;
+import io.johnathanluong.ecommerce.api.service.UserDetailsServiceImpl;
+
+// Excluding security because only want to test the controller functionality
+@WebMvcTest(value = ProductBulkControllerImpl.class, excludeAutoConfiguration = SecurityAutoConfiguration.class)
+class ProductBulkControllerTest {
+
+    @Autowired
+    MockMvc mockMvc;
+
+    @MockitoBean
+    ProductBulkService productBulkService;
+
+    @MockitoBean
+    JwtTokenProvider jwtTokenProvider;
+
+    @MockitoBean
+    UserDetailsServiceImpl userDetailsServiceImpl;
+
+    @Test
+    void testImportJson() throws Exception{
+        ImportReport report = new ImportReport(2, 1, 1, 5, Arrays.asList(new ImportError(2, "SKU2", "Name is required.")), false);
+        when(productBulkService.importJson(any(InputStream.class))).thenReturn(report);
+
+        mockMvc.perform(MockMvcRequestBuilders.post("/api/products/import")
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .content("[{\"name\":\"Keyboard\"},{\"sku\":\"SKU2\"}]"))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.imported").value(1))
+                .andExpect(jsonPath("$.errors[0].row").value(2))
+                .andExpect(jsonPath("$.errors[0].message").value("Name is required."));
+    }
+
+    @Test
+    void testImportCsvWithoutNameColumn() throws Exception{
+        when(productBulkService.importCsv(any(InputStream.class))).thenThrow(new IllegalArgumentException("CSV header must include a name column."));
+
+        mockMvc.perform(MockMvcRequestBuilders.post("/api/products/import")
+                        .contentType("text/csv")
+                        .content("sku,price\nA1,1.00\n"))
+                .andExpect(status().isBadRequest());
+    }
+
+    @Test
+    void testUpsertBySku() throws Exception{
+        UpsertReport report = new UpsertReport(2, 0, 1, 0, 1, 0, 3,
+            Arrays.asList(new ImportError(2, "GHOST", "No product has this SKU and no name was given to create one.")));
+        when(productBulkService.upsertBySku(anyList())).thenReturn(report);
+
+        mockMvc.perform(MockMvcRequestBuilders.post("/api/products/upsert")
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .content("[{\"sku\":\"SKU1\",\"price\":5.00},{\"sku\":\"GHOST\",\"stock\":1}]"))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.updated").value(1))
+                .andExpect(jsonPath("$.rejected").value(1))
+                .andExpect(jsonPath("$.errors[0].sku").value("GHOST"));
+    }
+}
@@ -0,0 +1,269 @@
+package io.johnathanluong.ecommerce.api;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.io.ByteArrayInputStream;
+import java.io.InputStream;
+import java.math.BigDecimal;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import org.hibernate.SessionFactory;
+import org.hibernate.stat.Statistics;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.jdbc.init.DataSourceScriptDatabaseInitializer;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.cache.Cache;
+import org.springframework.cache.CacheManager;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.test.annotation.DirtiesContext;
+import org.springframework.test.context.ActiveProfiles;
+
+import io.johnathanluong.ecommerce.api.config.CacheConfig;
+import io.johnathanluong.ecommerce.api.dto.ImportReport;
+import io.johnathanluong.ecommerce.api.dto.SkuUpsert;
+import io.johnathanluong.ecommerce.api.dto.UpsertReport;
+import io.johnathanluong.ecommerce.api.entity.Product;
+import io.johnathanluong.ecommerce.api.repository.ProductRepository;
+import io.johnathanluong.ecommerce.api.service.ProductBulkServiceImpl;
+import io.johnathanluong.ecommerce.api.service.ProductServiceImpl;
+import io.zonky.test.db.AutoConfigureEmbeddedDatabase;
+import io.zonky.test.db.AutoConfigureEmbeddedDatabase.DatabaseProvider;
+import jakarta.persistence.EntityManagerFactory;
+
+@SpringBootTest(properties = {
+    "spring.jpa.properties.hibernate.generate_statistics=true",
+    "app.products.import.batch-size=10",
+    "app.jpa.jdbc-batch-size=10",
+    "app.products.upsert.batch-size=10"
+})
+@DirtiesContext(classMode = DirtiesContext.ClassMode.BEFORE_EACH_TEST_METHOD)
+@AutoConfigureEmbeddedDatabase(provider = DatabaseProvider.ZONKY)
+@ActiveProfiles("test")
+class ProductBulkServiceImplTest {
+    @Autowired
+    private ProductBulkServiceImpl productBulkService;
+
+    @Autowired
+    private ProductServiceImpl productService;
+
+    @Autowired
+    private ProductRepository productRepository;
+
+    @Autowired
+    private EntityManagerFactory entityManagerFactory;
+
+    @Autowired
+    private CacheManager cacheManager;
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    @Autowired
+    private DataSourceScriptDatabaseInitializer productSequenceInitializer;
+
+    @BeforeEach
+    void setUp() {
+        productRepository.deleteAllInBatch();
+    }
+
+    private static InputStream body(String content) {
+        return new ByteArrayInputStream(content.getBytes(StandardCharsets.UTF_8));
+    }
+
+    @Test
+    void testImportJsonInsertsInBatches() throws Exception {
+        StringBuilder json = new StringBuilder("[");
+        for(int i = 0; i < 25; i++){
+            if(i > 0)
+                json.append(',');
+            json.append("{\"name\":\"Product ").append(i).append("\",\"price\":9.99,\"stock\":5,\"sku\":\"BULK").append(i).append("\"}");
+        }
+        json.append(']');
+
+        Statistics statistics = entityManagerFactory.unwrap(SessionFactory.class).getStatistics();
+        statistics.clear();
+        ImportReport report = productBulkService.importJson(body(json.toString()));
+
+        assertEquals(25, report.getReceived());
+        assertEquals(25, report.getImported());
+        assertEquals(0, report.getFailed());
+        assertEquals(25, productRepository.count());
+        assertEquals(25, statistics.getEntityInsertCount());
+        // Three JDBC batches and a couple of sequence calls, not one statement per product
+        assertTrue(statistics.getPrepareStatementCount() < 10, "statements: " + statistics.getPrepareStatementCount());
+        assertEquals(1, productService.searchProducts("product 7", null).size());
+    }
+
+    @Test
+    void testImportJsonReportsBadRowsAndKeepsTheRest() throws Exception {
+        String json = "[{\"name\":\"Keyboard\",\"sku\":\"KEY1\"},"
+            + "{\"sku\":\"NONAME\"},"
+            + "{\"name\":\"Mouse\",\"price\":\"cheap\"},"
+            + "42,"
+            + "{\"name\":\"Monitor\",\"sku\":\"WAYTOOLONGSKU\"},"
+            + "{\"name\":\"Webcam\",\"sku\":\"CAM1\"}]";
+
+        ImportReport report = productBulkService.importJson(body(json));
+
+        assertEquals(6, report.getReceived());
+        assertEquals(2, report.getImported());
+        assertEquals(4, report.getFailed());
+        assertEquals(2, report.getErrors().get(0).getRow());
+        assertEquals("NONAME", report.getErrors().get(0).getSku());
+        assertEquals("Invalid value for price.", report.getErrors().get(1).getMessage());
+        assertEquals(4, report.getErrors().get(2).getRow());
+        assertFalse(report.isErrorsTruncated());
+    }
+
+    @Test
+    void testSequenceScriptMovesIdsPastExistingRows() {
+        // A row written before the sequence existed, as on a database that used identity ids
+        jdbcTemplate.update("insert into products (id, name, version) values (1000, 'Legacy', 0)");
+        productSequenceInitializer.initializeDatabase();
+
+        Product created = productService.createProduct(new Product(null, "Fresh", null, new BigDecimal("1.00"), null, 1, null, "SEQ1", null));
+
+        assertTrue(created.getId() > 1000, "id: " + created.getId());
+        assertEquals(2, productRepository.count());
+    }
+
+    @Test
+    void testDuplicateSkuOnlyRejectsTheOffendingRow() throws Exception {
+        productService.createProduct(new Product(null, "Existing", null, new BigDecimal("1.00"), null, 1, null, "DUP1", null));
+
+        String csv = "name,sku,price,stock,description\n"
+            + "First,NEW1,10.00,3,\"Plain, with a comma\"\n"
+            + "Clash,DUP1,11.00,3,\n"
+            + "Second,NEW2,12.00,3,\"Says \"\"hi\"\"\"\n";
+
+        ImportReport report = productBulkService.importCsv(body(csv));
+
+        assertEquals(3, report.getReceived());
+        assertEquals(2, report.getImported());
+        assertEquals(1, report.getFailed());
+        assertEquals(2, report.getErrors().get(0).getRow());
+        assertEquals("DUP1", report.getErrors().get(0).getSku());
+        assertEquals("A product with this SKU already exists.", report.getErrors().get(0).getMessage());
+        assertEquals(3, productRepository.count());
+    }
+
+    @Test
+    void testImportCsvRejectsUnparseableValues() throws Exception {
+        String csv = "Name,Price,Stock\n"
+            + "Cable,abc,1\n"
+            + "Adapter,4.50,-2\n"
+            + "Charger,19.99,7\n";
+
+        ImportReport report = productBulkService.importCsv(body(csv));
+
+        assertEquals(1, report.getImported());
+        assertEquals("Invalid price: abc", report.getErrors().get(0).getMessage());
+        assertEquals("Stock must not be negative.", report.getErrors().get(1).getMessage());
+    }
+
+    @Test
+    void testImportCsvRequiresNameColumn() {
+        assertThrows(IllegalArgumentException.class, () -> productBulkService.importCsv(body("sku,price\nA1,1.00\n")));
+    }
+
+    @Test
+    void testUpsertBySkuInsertsUpdatesAndSkipsUnchanged() {
+        Product changed = productService.createProduct(new Product(null, "Changed", null, new BigDecimal("5.00"), null, 1, null, "UPS1", null));
+        Product same = productService.createProduct(new Product(null, "Same", null, new BigDecimal("7.00"), null, 2, null, "UPS2", null));
+
+        UpsertReport report = productBulkService.upsertBySku(Arrays.asList(
+            new SkuUpsert("UPS1", null, new BigDecimal("6.00"), null),
+            new SkuUpsert("UPS2", null, new BigDecimal("7.00"), 2),
+            new SkuUpsert("UPS3", "Brand New", new BigDecimal("3.00"), 4)));
+
+        assertEquals(3, report.getReceived());
+        assertEquals(1, report.getInserted());
+        assertEquals(1, report.getUpdated());
+        assertEquals(1, report.getUnchanged());
+        assertEquals(0, report.getRejected());
+
+        Product reloaded = productRepository.findById(changed.getId()).orElseThrow();
+        assertEquals(0, new BigDecimal("6.00").compareTo(reloaded.getPrice()));
+        assertEquals(1, reloaded.getStock());
+        assertEquals(changed.getVersion() + 1, reloaded.getVersion());
+        assertEquals(same.getVersion(), productRepository.findById(same.getId()).orElseThrow().getVersion());
+        assertEquals(1, productService.searchProducts("brand new", null).size());
+    }
+
+    @Test
+    void testUpsertBySkuOnlyDrawsIdsForNewSkus() {
+        productService.createProduct(new Product(null, "Existing", null, new BigDecimal("5.00"), null, 1, null, "SEQ2", null));
+        long before = jdbcTemplate.queryForObject("select last_value from " + Product.ID_SEQUENCE, Long.class);
+
+        UpsertReport report = productBulkService.upsertBySku(Arrays.asList(
+            new SkuUpsert("SEQ2", "Existing", new BigDecimal("6.00"), 3),
+            new SkuUpsert("GHOST", null, new BigDecimal("1.00"), 1)));
+
+        assertEquals(1, report.getUpdated());
+        assertEquals(1, report.getRejected());
+        assertEquals(before, jdbcTemplate.queryForObject("select last_value from " + Product.ID_SEQUENCE, Long.class));
+    }
+
+    @Test
+    void testUpsertBySkuOnlyEvictsUpdatedProducts() {
+        Product changed = productService.createProduct(new Product(null, "Changed", null, new BigDecimal("5.00"), null, 1, null, "EVI1", null));
+        Product untouched = productService.createProduct(new Product(null, "Untouched", null, new BigDecimal("7.00"), null, 2, null, "EVI2", null));
+        productService.getProductById(changed.getId());
+        productService.getProductById(untouched.getId());
+
+        productBulkService.upsertBySku(Arrays.asList(new SkuUpsert("EVI1", null, new BigDecimal("6.00"), null)));
+
+        Cache cache = cacheManager.getCache(CacheConfig.PRODUCTS_CACHE);
+        assertNull(cache.get(changed.getId()));
+        assertNotNull(cache.get(untouched.getId()));
+        assertEquals(0, new BigDecimal("6.00").compareTo(productService.getProductById(changed.getId()).getPrice()));
+    }
+
+    @Test
+    void testUpsertBySkuRejectsUnknownSkuWithoutName() {
+        UpsertReport report = productBulkService.upsertBySku(Arrays.asList(
+            new SkuUpsert("GHOST", null, new BigDecimal("1.00"), 1),
+            new SkuUpsert("TOOLONGSKU123", "Name", null, 1),
+            new SkuUpsert("NEG", "Name", null, -1)));
+
+        assertEquals(3, report.getRejected());
+        assertEquals(0, productRepository.count());
+        assertEquals("SKU must be at most 10 characters.", report.getErrors().get(0).getMessage());
+        assertEquals("Stock must not be negative.", report.getErrors().get(1).getMessage());
+        assertEquals(1, report.getErrors().get(2).getRow());
+        assertEquals("GHOST", report.getErrors().get(2).getSku());
+    }
+
+    @Test
+    void testUpsertBySkuKeepsLastRowForDuplicateSkus() {
+        List<SkuUpsert> rows = new ArrayList<>();
+        for(int i = 0; i < 25; i++){
+            rows.add(new SkuUpsert("MANY" + i, "Item " + i, new BigDecimal("1.00"), i));
+        }
+        rows.add(new SkuUpsert("MANY0", "Item 0", new BigDecimal("2.00"), 99));
+
+        Statistics statistics = entityManagerFactory.unwrap(SessionFactory.class).getStatistics();
+        statistics.clear();
+        UpsertReport report = productBulkService.upsertBySku(rows);
+
+        assertEquals(26, report.getReceived());
+        assertEquals(1, report.getDuplicates());
+        assertEquals(25, report.getInserted());
+        assertEquals(25, productRepository.count());
+        assertEquals(99, productRepository.findAll().stream()
+            .filter(product -> "MANY0".equals(product.getSku()))
+            .findFirst().orElseThrow().getStock());
+        // One statement per batch of ten, not one per row
+        assertTrue(statistics.getPrepareStatementCount() < 10, "statements: " + statistics.getPrepareStatementCount());
+    }
+}
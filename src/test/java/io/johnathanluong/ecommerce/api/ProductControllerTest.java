@@ -3,8 +3,19 @@ package io.johnathanluong.ecommerce.api;
 import com.fasterxml.jackson.databind.ObjectMapper;
 
 import io.johnathanluong.ecommerce.api.controller.ProductControllerImpl;
+import io.johnathanluong.ecommerce.api.dto.CursorPage;
+import io.johnathanluong.ecommerce.api.dto.FacetedProductPage;
+import io.johnathanluong.ecommerce.api.dto.ProductDetail;
+import io.johnathanluong.ecommerce.api.dto.ProductSummary;
+import io.johnathanluong.ecommerce.api.dto.ReviewView;
+import io.johnathanluong.ecommerce.api.dto.StockReservationResult;
 import io.johnathanluong.ecommerce.api.entity.Product;
+import io.johnathanluong.ecommerce.api.exception.PreconditionFailedException;
+import io.johnathanluong.ecommerce.api.index.FacetQuery;
+import io.johnathanluong.ecommerce.api.security.JwtTokenProvider;
 import io.johnathanluong.ecommerce.api.service.ProductService;
+import io.johnathanluong.ecommerce.api.service.ReviewService;
+import io.johnathanluong.ecommerce.api.service.UserDetailsServiceImpl;
 import org.junit.jupiter.api.Test;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.boot.test.autoconfigure.web.servlet.WebMvcTest;
@@ -15,15 +26,20 @@ import org.springframework.test.web.servlet.request.MockMvcRequestBuilders;
 import org.springframework.boot.autoconfigure.security.servlet.SecurityAutoConfiguration;
 
 import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.argThat;
 import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.ArgumentMatchers.isNull;
+import static org.mockito.Mockito.doAnswer;
 import static org.mockito.Mockito.times;
 import static org.mockito.Mockito.verify;
 import static org.mockito.Mockito.when;
 import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.*;
+import static org.junit.jupiter.api.Assertions.assertEquals;
 
 import java.math.BigDecimal;
 import java.time.LocalDateTime;
 import java.util.*;
+import java.util.function.Consumer;
 
 // Excluding security because only want to test the controller functionality
 @WebMvcTest(value = ProductControllerImpl.class, excludeAutoConfiguration = SecurityAutoConfiguration.class)
@@ -38,6 +54,16 @@ class ProductControllerTest {
     
     @MockitoBean
     ProductService productService;
+
+    @MockitoBean
+    ReviewService reviewService;
+
+    // The JWT filter is still picked up by the slice, so its collaborators need to exist
+    @MockitoBean
+    JwtTokenProvider jwtTokenProvider;
+
+    @MockitoBean
+    UserDetailsServiceImpl userDetailsServiceImpl;
     
     @Test
     void testCreateProduct() throws Exception{
@@ -94,6 +120,8 @@ class ProductControllerTest {
         createdProduct.setBrand("SoundWave");
 
         when(productService.getProductById(1L)).thenReturn(createdProduct);
+        when(reviewService.getAllReviewsOfProduct(1L)).thenReturn(Arrays.asList(
+            new ReviewView(3L, "Great sound.", "POSITIVE", LocalDateTime.now(), 9L, "reviewer")));
 
         mockMvc.perform(MockMvcRequestBuilders.get("/api/products/1")
                         .accept(MediaType.APPLICATION_JSON))
@@ -107,7 +135,9 @@ class ProductControllerTest {
                         .andExpect(jsonPath("$.category").value("Electronics"))
                         .andExpect(jsonPath("$.stock").value(150))
                         .andExpect(jsonPath("$.sku").value("SKU123456"))
-                        .andExpect(jsonPath("$.brand").value("SoundWave"));
+                        .andExpect(jsonPath("$.brand").value("SoundWave"))
+                        .andExpect(jsonPath("$.reviews[0].reviewText").value("Great sound."))
+                        .andExpect(jsonPath("$.reviews[0].author.username").value("reviewer"));
     }
 
     @Test
@@ -121,46 +151,153 @@ class ProductControllerTest {
     }
 
     @Test
-    void testGetAllProductsExists() throws Exception{
-        Product product1 = new Product();
-        product1.setId(1L);
-        product1.setName("Headphones");
-        Product product2 = new Product();
-        product2.setId(2L);
-        product2.setName("Keyboard");
-        List<Product> productList = Arrays.asList(product1, product2);
+    void testGetProductBySku() throws Exception{
+        Product product = new Product(7L, "Headphones", "Good description.", new BigDecimal("99.99"), "Electronics", 150, LocalDateTime.now(), "SKU123456", "SoundWave");
+        product.setVersion(2L);
+        when(productService.getProductBySku("SKU123456")).thenReturn(product);
+
+        mockMvc.perform(MockMvcRequestBuilders.get("/api/products/sku/SKU123456")
+                        .accept(MediaType.APPLICATION_JSON))
+                        .andExpect(status().isOk())
+                        .andExpect(header().string("ETag", "\"2\""))
+                        .andExpect(jsonPath("$.id").value(7))
+                        .andExpect(jsonPath("$.sku").value("SKU123456"));
+    }
+
+    @Test
+    void testGetProductBySkuNotFound() throws Exception{
+        when(productService.getProductBySku("MISSING")).thenReturn(null);
 
-        when(productService.getAllProducts()).thenReturn(productList);
+        mockMvc.perform(MockMvcRequestBuilders.get("/api/products/sku/MISSING")
+                        .accept(MediaType.APPLICATION_JSON))
+                        .andExpect(status().isNotFound());
+    }
+
+    @Test
+    void testGetProductsFirstPage() throws Exception{
+        ProductSummary product1 = new ProductSummary(1L, "Headphones", new BigDecimal("99.99"), "Electronics", 150, "SKU123456", "SoundWave");
+        ProductSummary product2 = new ProductSummary(2L, "Keyboard", new BigDecimal("49.99"), "Electronics", 20, "SKU654321", "KeyCo");
+        List<ProductSummary> productList = Arrays.asList(product1, product2);
+
+        when(productService.getProducts(null, 2)).thenReturn(new CursorPage<>(productList, "next"));
 
         mockMvc.perform(MockMvcRequestBuilders.get("/api/products")
+                        .param("limit", "2")
                         .accept(MediaType.APPLICATION_JSON))
                 .andExpect(status().isOk())
                 .andExpect(content().contentType(MediaType.APPLICATION_JSON))
-                .andExpect(jsonPath("$[0].id").value(1))
-                .andExpect(jsonPath("$[0].name").value("Headphones"))
-                .andExpect(jsonPath("$[1].id").value(2))
-                .andExpect(jsonPath("$[1].name").value("Keyboard"));
+                .andExpect(jsonPath("$.items[0].id").value(1))
+                .andExpect(jsonPath("$.items[0].name").value("Headphones"))
+                .andExpect(jsonPath("$.items[1].id").value(2))
+                .andExpect(jsonPath("$.items[1].name").value("Keyboard"))
+                .andExpect(jsonPath("$.items[0].description").doesNotExist())
+                .andExpect(jsonPath("$.nextCursor").value("next"));
     }
 
     @Test
-    void testGetAllProductsNotExist() throws Exception{
-        when(productService.getAllProducts()).thenReturn(Arrays.asList());
+    void testGetProductsNotExist() throws Exception{
+        when(productService.getProducts(null, null)).thenReturn(new CursorPage<>(Arrays.asList(), null));
 
         mockMvc.perform(MockMvcRequestBuilders.get("/api/products")
                         .accept(MediaType.APPLICATION_JSON))
                 .andExpect(status().isOk())
                 .andExpect(content().contentType(MediaType.APPLICATION_JSON))
-                .andExpect(jsonPath("$").isEmpty());
+                .andExpect(jsonPath("$.items").isEmpty())
+                .andExpect(jsonPath("$.nextCursor").doesNotExist());
     }
 
     @Test
-    void testUpdateProductExists() throws Exception {
-        // Previous data
-        Product existingProduct = new Product();
-        existingProduct.setId(1L);
-        existingProduct.setName("Original Headphones");
-        existingProduct.setDescription("Old description.");
+    void testGetProductsInvalidCursor() throws Exception{
+        when(productService.getProducts("garbage", null)).thenThrow(new IllegalArgumentException("Invalid cursor: garbage"));
+
+        mockMvc.perform(MockMvcRequestBuilders.get("/api/products")
+                        .param("after", "garbage")
+                        .accept(MediaType.APPLICATION_JSON))
+                .andExpect(status().isBadRequest());
+    }
+
+    @Test
+    void testFilterProducts() throws Exception{
+        ProductSummary product = new ProductSummary(1L, "Headphones", new BigDecimal("99.99"), "Electronics", 150, "SKU123456", "SoundWave");
+        Map<String, Map<String, Long>> facets = Map.of("brand", Map.of("SoundWave", 1L, "KeyCo", 2L));
+
+        when(productService.filterProducts(any(FacetQuery.class), eq(null), eq(10)))
+            .thenReturn(new FacetedProductPage(Arrays.asList(product), "next", 1, facets));
+
+        mockMvc.perform(MockMvcRequestBuilders.get("/api/products/facets")
+                        .param("category", "Electronics")
+                        .param("brand", "SoundWave", "KeyCo")
+                        .param("inStock", "true")
+                        .param("limit", "10")
+                        .accept(MediaType.APPLICATION_JSON))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.items[0].id").value(1))
+                .andExpect(jsonPath("$.total").value(1))
+                .andExpect(jsonPath("$.facets.brand.KeyCo").value(2))
+                .andExpect(jsonPath("$.nextCursor").value("next"));
+
+        verify(productService).filterProducts(argThat(query -> query.getBrands().equals(Set.of("SoundWave", "KeyCo"))
+            && query.getCategories().equals(Set.of("Electronics")) && Boolean.TRUE.equals(query.getInStock())), eq(null), eq(10));
+    }
+
+    @Test
+    void testFilterProductsInvalidPriceRange() throws Exception{
+        when(productService.filterProducts(any(FacetQuery.class), eq(null), eq(null)))
+            .thenThrow(new IllegalArgumentException("Minimum price must not exceed maximum price."));
+
+        mockMvc.perform(MockMvcRequestBuilders.get("/api/products/facets")
+                        .param("minPrice", "100")
+                        .param("maxPrice", "10")
+                        .accept(MediaType.APPLICATION_JSON))
+                .andExpect(status().isBadRequest());
+    }
+
+    @Test
+    void testSearchProducts() throws Exception{
+        ProductSummary product = new ProductSummary(1L, "Headphones", new BigDecimal("99.99"), "Electronics", 150, "SKU123456", "SoundWave");
+
+        when(productService.searchProducts("soundwave head", null)).thenReturn(Arrays.asList(product));
+
+        mockMvc.perform(MockMvcRequestBuilders.get("/api/products/search")
+                        .param("q", "soundwave head")
+                        .accept(MediaType.APPLICATION_JSON))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$[0].id").value(1))
+                .andExpect(jsonPath("$[0].name").value("Headphones"));
+    }
 
+    @Test
+    void testSearchProductsBlankQuery() throws Exception{
+        when(productService.searchProducts(" ", null)).thenThrow(new IllegalArgumentException("Search query must not be empty."));
+
+        mockMvc.perform(MockMvcRequestBuilders.get("/api/products/search")
+                        .param("q", " ")
+                        .accept(MediaType.APPLICATION_JSON))
+                .andExpect(status().isBadRequest());
+    }
+
+    @Test
+    void testExportProductsWritesNdjson() throws Exception{
+        doAnswer(invocation -> {
+            Consumer<ProductDetail> consumer = invocation.getArgument(0);
+            consumer.accept(new ProductDetail(1L, "Headphones", null, null, null, null, null, null, null));
+            consumer.accept(new ProductDetail(2L, "Keyboard", null, null, null, null, null, null, null));
+            return 2L;
+        }).when(productService).exportProducts(any());
+
+        String body = mockMvc.perform(MockMvcRequestBuilders.get("/api/products/export"))
+                .andExpect(status().isOk())
+                .andExpect(content().contentType(MediaType.APPLICATION_NDJSON))
+                .andReturn().getResponse().getContentAsString();
+
+        String[] lines = body.split("\n");
+        assertEquals(2, lines.length);
+        assertEquals(1, objectMapper.readTree(lines[0]).get("id").asInt());
+        assertEquals("Keyboard", objectMapper.readTree(lines[1]).get("name").asText());
+    }
+
+    @Test
+    void testUpdateProductExists() throws Exception {
         // New data
         Product updatedProduct = new Product();
         updatedProduct.setName("New Headphones"); 
@@ -182,8 +319,7 @@ class ProductControllerTest {
         serviceUpdatedProduct.setSku(updatedProduct.getSku());
         serviceUpdatedProduct.setBrand(updatedProduct.getBrand());
         
-        when(productService.getProductById(1L)).thenReturn(existingProduct);
-        when(productService.updateProduct(eq(1L), any(Product.class))).thenReturn(serviceUpdatedProduct);
+        when(productService.updateProduct(eq(1L), any(Product.class), isNull())).thenReturn(serviceUpdatedProduct);
 
         mockMvc.perform(MockMvcRequestBuilders.put("/api/products/1")
                         .contentType(MediaType.APPLICATION_JSON)
@@ -202,6 +338,46 @@ class ProductControllerTest {
                     .andExpect(jsonPath("$.brand").value(serviceUpdatedProduct.getBrand()));
     }
 
+    @Test
+    void testUpdateProductWithIfMatch() throws Exception{
+        Product existingProduct = new Product();
+        existingProduct.setId(1L);
+        existingProduct.setVersion(3L);
+
+        Product serviceUpdatedProduct = new Product();
+        serviceUpdatedProduct.setId(1L);
+        serviceUpdatedProduct.setVersion(4L);
+
+        when(productService.getProductById(1L)).thenReturn(existingProduct);
+        when(productService.updateProduct(eq(1L), argThat(product -> new BigDecimal("89.99").equals(product.getPrice())), eq(3L)))
+            .thenReturn(serviceUpdatedProduct);
+        when(productService.updateProduct(eq(1L), any(Product.class), eq(2L)))
+            .thenThrow(new PreconditionFailedException("Product 1 is at version 3, not 2."));
+
+        mockMvc.perform(MockMvcRequestBuilders.get("/api/products/1"))
+                .andExpect(status().isOk())
+                .andExpect(header().string("ETag", "\"3\""));
+
+        mockMvc.perform(MockMvcRequestBuilders.put("/api/products/1")
+                        .header("If-Match", "\"3\"")
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .content("{\"price\":89.99}"))
+                .andExpect(status().isOk())
+                .andExpect(header().string("ETag", "\"4\""));
+
+        mockMvc.perform(MockMvcRequestBuilders.put("/api/products/1")
+                        .header("If-Match", "W/\"2\"")
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .content("{\"price\":79.99}"))
+                .andExpect(status().isPreconditionFailed());
+
+        mockMvc.perform(MockMvcRequestBuilders.put("/api/products/1")
+                        .header("If-Match", "\"not-a-version\"")
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .content("{\"price\":79.99}"))
+                .andExpect(status().isPreconditionFailed());
+    }
+
     @Test
     void testUpdateProductNotExists() throws Exception{
         Product updatedProduct = new Product();
@@ -213,7 +389,7 @@ class ProductControllerTest {
         updatedProduct.setSku("SKU789123");
         updatedProduct.setBrand("UpdatedBrand");
 
-        when(productService.updateProduct(10L, updatedProduct)).thenReturn(null);
+        when(productService.updateProduct(10L, updatedProduct, null)).thenReturn(null);
 
         mockMvc.perform(MockMvcRequestBuilders.put("/api/products/10")
                 .accept(MediaType.APPLICATION_JSON)
@@ -222,6 +398,46 @@ class ProductControllerTest {
             .andExpect(status().isNotFound());
     }
 
+    @Test
+    void testPatchProduct() throws Exception{
+        when(productService.patchProduct(eq(1L), any(Product.class), isNull())).thenReturn(true);
+        when(productService.patchProduct(eq(10L), any(Product.class), isNull())).thenReturn(false);
+        when(productService.patchProduct(eq(1L), any(Product.class), eq(2L)))
+            .thenThrow(new PreconditionFailedException("Product 1 is no longer at version 2."));
+
+        mockMvc.perform(MockMvcRequestBuilders.patch("/api/products/1")
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .content("{\"price\": 89.99}"))
+                .andExpect(status().isNoContent());
+        verify(productService).patchProduct(eq(1L), argThat(patch -> new BigDecimal("89.99").equals(patch.getPrice())
+            && patch.getName() == null), isNull());
+
+        mockMvc.perform(MockMvcRequestBuilders.patch("/api/products/10")
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .content("{\"price\": 89.99}"))
+                .andExpect(status().isNotFound());
+
+        mockMvc.perform(MockMvcRequestBuilders.patch("/api/products/1")
+                        .header("If-Match", "\"2\"")
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .content("{\"price\": 89.99}"))
+                .andExpect(status().isPreconditionFailed());
+    }
+
+    @Test
+    void testReserveStock() throws Exception{
+        when(productService.reserveStock(1L, 2)).thenReturn(StockReservationResult.RESERVED);
+        when(productService.reserveStock(1L, 500)).thenReturn(StockReservationResult.INSUFFICIENT_STOCK);
+        when(productService.reserveStock(9999L, 1)).thenReturn(StockReservationResult.NOT_FOUND);
+
+        mockMvc.perform(MockMvcRequestBuilders.post("/api/products/1/stock/reserve").param("quantity", "2"))
+                .andExpect(status().isNoContent());
+        mockMvc.perform(MockMvcRequestBuilders.post("/api/products/1/stock/reserve").param("quantity", "500"))
+                .andExpect(status().isConflict());
+        mockMvc.perform(MockMvcRequestBuilders.post("/api/products/9999/stock/reserve").param("quantity", "1"))
+                .andExpect(status().isNotFound());
+    }
+
     @Test
     void testDeleteProductByIdExists() throws Exception{
         when(productService.deleteProduct(1L)).thenReturn(true);
@@ -0,0 +1,113 @@
+package io.johnathanluong.ecommerce.api;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.math.BigDecimal;
+import java.util.Arrays;
+import java.util.Map;
+import java.util.Set;
+
+import org.junit.jupiter.api.Test;
+
+import io.johnathanluong.ecommerce.api.index.FacetQuery;
+import io.johnathanluong.ecommerce.api.index.FacetResult;
+import io.johnathanluong.ecommerce.api.index.ProductFacetIndex;
+
+class ProductFacetIndexTest {
+
+    private ProductFacetIndex newIndex() {
+        ProductFacetIndex index = new ProductFacetIndex(null, 1000, new int[]{25, 50, 100});
+        index.index(1L, "Electronics", "SoundWave", new BigDecimal("99.99"), 150);
+        index.index(2L, "Electronics", "KeyCo", new BigDecimal("49.99"), 0);
+        index.index(3L, "Accessories", "SoundWave", new BigDecimal("19.99"), 10);
+        index.index(4L, "Electronics", "SoundWave", new BigDecimal("250.00"), 3);
+        return index;
+    }
+
+    @Test
+    void testUnfilteredQueryCountsEverything() {
+        FacetResult result = newIndex().search(new FacetQuery(null, null, null, null, null), null, 10);
+
+        assertEquals(Arrays.asList(1L, 2L, 3L, 4L), result.getProductIds());
+        assertEquals(4, result.getTotal());
+        assertEquals(Map.of("Electronics", 3L, "Accessories", 1L), result.getFacets().get(ProductFacetIndex.CATEGORY));
+        assertEquals(Map.of("0-25", 1L, "25-50", 1L, "50-100", 1L, "100+", 1L), result.getFacets().get(ProductFacetIndex.PRICE));
+        assertEquals(Map.of("true", 3L, "false", 1L), result.getFacets().get(ProductFacetIndex.IN_STOCK));
+    }
+
+    @Test
+    void testFacetsIgnoreTheirOwnFilter() {
+        FacetQuery query = new FacetQuery(Set.of("Electronics"), Set.of("SoundWave"), null, null, true);
+        FacetResult result = newIndex().search(query, null, 10);
+
+        assertEquals(Arrays.asList(1L, 4L), result.getProductIds());
+        // KeyCo's only electronics product is out of stock
+        assertEquals(Map.of("SoundWave", 2L), result.getFacets().get(ProductFacetIndex.BRAND));
+        // Categories are counted without the category filter
+        assertEquals(Map.of("Electronics", 2L, "Accessories", 1L), result.getFacets().get(ProductFacetIndex.CATEGORY));
+        assertEquals(Map.of("true", 2L, "false", 0L), result.getFacets().get(ProductFacetIndex.IN_STOCK));
+    }
+
+    @Test
+    void testOutOfStockFilterCountsEveryFacet() {
+        FacetQuery query = new FacetQuery(null, Set.of("KeyCo", "SoundWave"), null, new BigDecimal("99.99"), false);
+        FacetResult result = newIndex().search(query, null, 10);
+
+        assertEquals(Arrays.asList(2L), result.getProductIds());
+        assertEquals(Map.of("KeyCo", 1L), result.getFacets().get(ProductFacetIndex.BRAND));
+        assertEquals(Map.of("0-25", 0L, "25-50", 1L, "50-100", 0L, "100+", 0L), result.getFacets().get(ProductFacetIndex.PRICE));
+        // Stock is counted without the stock filter, over the same brands and price range
+        assertEquals(Map.of("true", 2L, "false", 1L), result.getFacets().get(ProductFacetIndex.IN_STOCK));
+    }
+
+    @Test
+    void testPriceRangeSplitsBuckets() {
+        FacetResult result = newIndex().search(new FacetQuery(null, null, new BigDecimal("20"), new BigDecimal("99.99"), null), null, 10);
+
+        assertEquals(Arrays.asList(1L, 2L), result.getProductIds());
+    }
+
+    @Test
+    void testPagesFollowTheCursor() {
+        ProductFacetIndex index = newIndex();
+        FacetQuery query = new FacetQuery(Set.of("Electronics"), null, null, null, null);
+
+        FacetResult first = index.search(query, null, 2);
+        assertEquals(Arrays.asList(1L, 2L), first.getProductIds());
+        assertTrue(first.hasMore());
+
+        FacetResult second = index.search(query, 2L, 2);
+        assertEquals(Arrays.asList(4L), second.getProductIds());
+        assertFalse(second.hasMore());
+        assertThrows(IllegalArgumentException.class, () -> index.search(query, 99L, 2));
+    }
+
+    @Test
+    void testWritesMoveProductsBetweenValues() {
+        ProductFacetIndex index = newIndex();
+
+        index.index(2L, "Accessories", "KeyCo", new BigDecimal("49.99"), 5);
+        index.remove(3L);
+
+        FacetResult result = index.search(new FacetQuery(Set.of("Accessories"), null, null, null, true), null, 10);
+        assertEquals(Arrays.asList(2L), result.getProductIds());
+        assertEquals(Map.of("Electronics", 2L, "Accessories", 1L), result.getFacets().get(ProductFacetIndex.CATEGORY));
+        assertEquals(3, index.size());
+    }
+
+    @Test
+    void testPatchKeepsFieldsItDoesNotSet() {
+        ProductFacetIndex index = newIndex();
+
+        index.patch(2L, null, null, new BigDecimal("120.00"), null);
+        index.adjustStock(1L, -150);
+
+        FacetResult result = index.search(new FacetQuery(Set.of("Electronics"), Set.of("KeyCo"), new BigDecimal("100"), null, null), null, 10);
+        assertEquals(Arrays.asList(2L), result.getProductIds());
+        assertEquals(Map.of("true", 1L, "false", 2L), index.search(new FacetQuery(Set.of("Electronics"), null, null, null, null), null, 10)
+            .getFacets().get(ProductFacetIndex.IN_STOCK));
+    }
+}
@@ -0,0 +1,112 @@
+package io.johnathanluong.ecommerce.api;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.util.Arrays;
+import java.util.List;
+
+import org.junit.jupiter.api.Test;
+
+import io.johnathanluong.ecommerce.api.index.ProductSearchIndex;
+
+class ProductSearchIndexTest {
+
+    private ProductSearchIndex newIndex() {
+        ProductSearchIndex index = new ProductSearchIndex(null, 1000);
+        index.index(1L, "Wireless Headphones", "SoundWave", "Electronics", "Noise cancelling over-ear headphones.");
+        index.index(2L, "Headphone Stand", "DeskCo", "Accessories", "Holds any pair of headphones.");
+        index.index(3L, "Mechanical Keyboard", "KeyCo", "Electronics", "Hot swappable switches.");
+        return index;
+    }
+
+    @Test
+    void testRanksNameMatchesAboveDescriptionMatches() {
+        ProductSearchIndex index = newIndex();
+
+        assertEquals(Arrays.asList(1L, 2L), index.search("headphones", 10));
+        assertEquals(Arrays.asList(3L), index.search("KEYBOARD!", 10));
+    }
+
+    @Test
+    void testRequiresEveryTerm() {
+        ProductSearchIndex index = newIndex();
+
+        assertEquals(Arrays.asList(1L), index.search("electronics headphones", 10));
+        assertTrue(index.search("keyboard headphones", 10).isEmpty());
+    }
+
+    @Test
+    void testLastTermMatchesAsPrefix() {
+        ProductSearchIndex index = newIndex();
+
+        assertEquals(Arrays.asList(3L), index.search("mech", 10));
+        assertEquals(Arrays.asList(1L), index.search("soundwave head", 10));
+        // Only the last term expands
+        assertTrue(index.search("mech keyboard", 10).isEmpty());
+    }
+
+    @Test
+    void testLimitKeepsTheBestResults() {
+        ProductSearchIndex index = newIndex();
+
+        assertEquals(Arrays.asList(1L), index.search("headphones", 1));
+    }
+
+    @Test
+    void testReindexReplacesPreviousTerms() {
+        ProductSearchIndex index = newIndex();
+
+        index.index(1L, "Wireless Earbuds", "SoundWave", "Electronics", "In-ear.");
+
+        assertEquals(Arrays.asList(2L), index.search("headphones", 10));
+        assertEquals(Arrays.asList(1L), index.search("earbuds", 10));
+        assertEquals(3, index.size());
+    }
+
+    @Test
+    void testRemovedProductsStopMatching() {
+        ProductSearchIndex index = newIndex();
+
+        index.remove(2L);
+
+        assertEquals(Arrays.asList(1L), index.search("headphones", 10));
+        assertEquals(2, index.size());
+    }
+
+    @Test
+    void testRemovedProductsStopCountingTowardsTermRarity() {
+        ProductSearchIndex index = new ProductSearchIndex(null, 1000);
+        index.index(1L, "Widea", null, null, null);
+        index.index(2L, "Wideb", null, null, null);
+        for(long id = 100; id < 150; id++){
+            index.index(id, "Widea", null, null, null);
+        }
+        // The rarer expansion ranks first
+        assertEquals(Arrays.asList(2L, 1L), index.search("wide", 2));
+
+        // Too few removals to compact, but widea is as rare as wideb again
+        for(long id = 100; id < 150; id++){
+            index.remove(id);
+        }
+        assertEquals(Arrays.asList(1L, 2L), index.search("wide", 10));
+    }
+
+    @Test
+    void testCompactionKeepsResults() {
+        ProductSearchIndex index = new ProductSearchIndex(null, 1000);
+        for(long id = 1; id <= 3000; id++){
+            index.index(id, "Widget " + id, "Acme", "Tools", null);
+        }
+        // Enough churn to trigger at least one compaction
+        for(long id = 1; id <= 2000; id++){
+            index.remove(id);
+        }
+
+        List<Long> results = index.search("widget", 5000);
+        assertEquals(1000, results.size());
+        assertEquals(1000, index.size());
+        assertEquals(Arrays.asList(2500L), index.search("widget 2500", 10));
+        assertTrue(index.search("widget 1500", 10).isEmpty());
+    }
+}
@@ -4,23 +4,40 @@ import static org.junit.jupiter.api.Assertions.assertEquals;
 import static org.junit.jupiter.api.Assertions.assertFalse;
 import static org.junit.jupiter.api.Assertions.assertNotNull;
 import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
 
 import java.math.BigDecimal;
 import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
 
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.cache.CacheManager;
 import org.springframework.test.annotation.DirtiesContext;
 import org.springframework.test.context.ActiveProfiles;
 
+import io.johnathanluong.ecommerce.api.config.CacheConfig;
+import io.johnathanluong.ecommerce.api.dto.CursorPage;
+import io.johnathanluong.ecommerce.api.dto.ProductSummary;
+import io.johnathanluong.ecommerce.api.dto.StockReservationResult;
 import io.johnathanluong.ecommerce.api.entity.Product;
+import io.johnathanluong.ecommerce.api.exception.PreconditionFailedException;
 import io.johnathanluong.ecommerce.api.repository.ProductRepository;
 import io.johnathanluong.ecommerce.api.service.ProductServiceImpl;
+import io.zonky.test.db.AutoConfigureEmbeddedDatabase;
+import io.zonky.test.db.AutoConfigureEmbeddedDatabase.DatabaseProvider;
 
 @SpringBootTest
 @DirtiesContext(classMode = DirtiesContext.ClassMode.BEFORE_EACH_TEST_METHOD)
+@AutoConfigureEmbeddedDatabase(provider = DatabaseProvider.ZONKY)
 @ActiveProfiles("test")
 class ProductServiceImplTest {
     @Autowired
@@ -29,6 +46,9 @@ class ProductServiceImplTest {
     @Autowired
     private ProductRepository productRepository;
 
+    @Autowired
+    private CacheManager cacheManager;
+
     @BeforeEach
     void setUp() {
         productRepository.deleteAllInBatch();
@@ -92,6 +112,67 @@ class ProductServiceImplTest {
         assertNotNull(createdProduct.getCreatedAt());
     }    
 
+    @Test
+    @DirtiesContext
+    void testGetProductsPagesWithCursor(){
+        for(int i = 0; i < 5; i++){
+            productService.createProduct(new Product(
+                null, 
+                "Headphones " + i, 
+                "Good description.",
+                new BigDecimal("99.99"), 
+                "Electronics", 
+                150, 
+                LocalDateTime.now(), 
+                "SKU" + i, 
+                "SoundWave"
+            ));
+        }
+
+        CursorPage<ProductSummary> firstPage = productService.getProducts(null, 2);
+        CursorPage<ProductSummary> secondPage = productService.getProducts(firstPage.getNextCursor(), 2);
+        CursorPage<ProductSummary> lastPage = productService.getProducts(secondPage.getNextCursor(), 2);
+
+        assertEquals(2, firstPage.getItems().size());
+        assertEquals("Headphones 0", firstPage.getItems().get(0).getName());
+        assertEquals(2, secondPage.getItems().size());
+        assertEquals("Headphones 2", secondPage.getItems().get(0).getName());
+        assertEquals(1, lastPage.getItems().size());
+        assertEquals("Headphones 4", lastPage.getItems().get(0).getName());
+        assertNull(lastPage.getNextCursor());
+    }
+
+    @Test
+    void testGetProductsInvalidCursor(){
+        assertThrows(IllegalArgumentException.class, () -> productService.getProducts("not-a-cursor", 2));
+    }
+
+    @Test
+    @DirtiesContext
+    void testGetProductByIdIsCachedUntilUpdated(){
+        Product createdProduct = productService.createProduct(new Product(
+            null, 
+            "Headphones", 
+            "Good description.",
+            new BigDecimal("99.99"), 
+            "Electronics", 
+            150, 
+            LocalDateTime.now(), 
+            "SKU123456", 
+            "SoundWave"
+        ));
+        Long id = createdProduct.getId();
+
+        productService.getProductById(id);
+        assertNotNull(cacheManager.getCache(CacheConfig.PRODUCTS_CACHE).get(id));
+
+        Product updatedProduct = new Product();
+        updatedProduct.setName("New Headphones");
+        productService.updateProduct(id, updatedProduct, null);
+        assertNull(cacheManager.getCache(CacheConfig.PRODUCTS_CACHE).get(id));
+        assertEquals("New Headphones", productService.getProductById(id).getName());
+    }
+
     @Test
     void testGetProductByIdDoesNotExist() {
         Product retrievedProduct = productService.getProductById(999L);
@@ -130,7 +211,7 @@ class ProductServiceImplTest {
             "SoundWave"
             );
             
-        productService.updateProduct(createdProduct.getId(), updatedProduct);
+        productService.updateProduct(createdProduct.getId(), updatedProduct, null);
         Product retrievedProduct = productService.getProductById(createdProduct.getId());
         
         assertNotNull(retrievedProduct);
@@ -143,6 +224,67 @@ class ProductServiceImplTest {
         assertEquals(updatedProduct.getBrand(), retrievedProduct.getBrand());
     }
 
+    @Test
+    @DirtiesContext
+    void testUpdateProductWithStaleVersionFails(){
+        Product createdProduct = productService.createProduct(new Product(null, "Headphones", "Good description.",
+            new BigDecimal("99.99"), "Electronics", 150, null, "SKU123456", "SoundWave"));
+        long version = productRepository.findById(createdProduct.getId()).orElseThrow().getVersion();
+
+        Product firstEdit = new Product();
+        firstEdit.setPrice(new BigDecimal("89.99"));
+        Product saved = productService.updateProduct(createdProduct.getId(), firstEdit, version);
+        assertEquals(version + 1, saved.getVersion());
+
+        // A second editor still holding the original version is refused instead of overwriting the price
+        Product secondEdit = new Product();
+        secondEdit.setPrice(new BigDecimal("79.99"));
+        assertThrows(PreconditionFailedException.class, () -> productService.updateProduct(createdProduct.getId(), secondEdit, version));
+        assertEquals(new BigDecimal("89.99"), productRepository.findById(createdProduct.getId()).orElseThrow().getPrice());
+    }
+
+    @Test
+    @DirtiesContext
+    void testReserveStockBumpsVersion(){
+        Product createdProduct = productService.createProduct(new Product(null, "Headphones", "Good description.",
+            new BigDecimal("99.99"), "Electronics", 150, null, "SKU123456", "SoundWave"));
+        long version = productRepository.findById(createdProduct.getId()).orElseThrow().getVersion();
+
+        productService.reserveStock(createdProduct.getId(), 1);
+
+        Product edit = new Product();
+        edit.setStock(150);
+        assertThrows(PreconditionFailedException.class, () -> productService.updateProduct(createdProduct.getId(), edit, version));
+    }
+
+    @Test
+    @DirtiesContext
+    void testPatchProductWritesOnlySuppliedFields(){
+        Product createdProduct = productService.createProduct(new Product(null, "Headphones", "Good description.",
+            new BigDecimal("99.99"), "Electronics", 150, null, "SKU123456", "SoundWave"));
+        Long id = createdProduct.getId();
+        long version = productRepository.findById(id).orElseThrow().getVersion();
+        productService.getProductById(id);
+
+        Product patch = new Product();
+        patch.setPrice(new BigDecimal("89.99"));
+        patch.setName("Wireless Headphones");
+        assertTrue(productService.patchProduct(id, patch, version));
+
+        assertNull(cacheManager.getCache(CacheConfig.PRODUCTS_CACHE).get(id));
+        Product patched = productService.getProductById(id);
+        assertEquals(new BigDecimal("89.99"), patched.getPrice());
+        assertEquals("Wireless Headphones", patched.getName());
+        assertEquals("Good description.", patched.getDescription());
+        assertEquals(150, patched.getStock());
+        assertEquals(version + 1, patched.getVersion());
+        assertEquals(1, productService.searchProducts("wireless", null).size());
+
+        assertThrows(PreconditionFailedException.class, () -> productService.patchProduct(id, patch, version));
+        assertFalse(productService.patchProduct(9999L, patch, null));
+        assertThrows(IllegalArgumentException.class, () -> productService.patchProduct(id, new Product(), null));
+    }
+
     @Test
     void testUpdateProductNotExists(){
         Product updatedProduct = new Product(
@@ -157,7 +299,7 @@ class ProductServiceImplTest {
             "SoundWave"
             );
 
-        Product newProduct = productService.updateProduct(9999L, updatedProduct);
+        Product newProduct = productService.updateProduct(9999L, updatedProduct, null);
 
         assertNull(newProduct);
     }
@@ -187,10 +329,120 @@ class ProductServiceImplTest {
         assertNull(productService.getProductById(productID));
     }
 
+    @Test
+    @DirtiesContext
+    void testSearchProductsFollowsWrites(){
+        Product headphones = productService.createProduct(new Product(null, "Wireless Headphones", "Noise cancelling.",
+            new BigDecimal("99.99"), "Electronics", 150, null, "SKU123456", "SoundWave"));
+        productService.createProduct(new Product(null, "Keyboard", "Mechanical switches.",
+            new BigDecimal("49.99"), "Electronics", 20, null, "SKU654321", "KeyCo"));
+
+        List<ProductSummary> results = productService.searchProducts("soundwave head", null);
+        assertEquals(1, results.size());
+        assertEquals(headphones.getId(), results.get(0).getId());
+
+        Product rename = new Product();
+        rename.setName("Wireless Earbuds");
+        productService.updateProduct(headphones.getId(), rename, null);
+        assertTrue(productService.searchProducts("headphones", null).isEmpty());
+        assertEquals(1, productService.searchProducts("earbuds", null).size());
+
+        productService.deleteProduct(headphones.getId());
+        assertTrue(productService.searchProducts("earbuds", null).isEmpty());
+    }
+
+    @Test
+    void testSearchProductsRejectsBlankQuery(){
+        assertThrows(IllegalArgumentException.class, () -> productService.searchProducts("  ", null));
+    }
+
+    @Test
+    @DirtiesContext
+    void testReserveStockNeverOversells() throws Exception{
+        Product product = productService.createProduct(new Product(null, "Headphones", "Good description.",
+            new BigDecimal("99.99"), "Electronics", 100, null, "SKU123456", "SoundWave"));
+        Long id = product.getId();
+
+        int attempts = 300;
+        ExecutorService executor = Executors.newFixedThreadPool(32);
+        CountDownLatch start = new CountDownLatch(1);
+        List<Future<StockReservationResult>> results = new ArrayList<>();
+        try{
+            for(int i = 0; i < attempts; i++){
+                results.add(executor.submit(() -> {
+                    start.await();
+                    return productService.reserveStock(id, 1);
+                }));
+            }
+            start.countDown();
+
+            int reserved = 0;
+            int insufficient = 0;
+            for(Future<StockReservationResult> result : results){
+                if(result.get() == StockReservationResult.RESERVED)
+                    reserved++;
+                else if(result.get() == StockReservationResult.INSUFFICIENT_STOCK)
+                    insufficient++;
+            }
+            assertEquals(100, reserved);
+            assertEquals(attempts - 100, insufficient);
+        } finally{
+            executor.shutdownNow();
+        }
+
+        assertEquals(0, productRepository.findById(id).orElseThrow().getStock());
+        assertEquals(StockReservationResult.NOT_FOUND, productService.reserveStock(9999L, 1));
+    }
+
+    @Test
+    @DirtiesContext
+    void testReserveStockEvictsCachedProduct(){
+        Product product = productService.createProduct(new Product(null, "Headphones", "Good description.",
+            new BigDecimal("99.99"), "Electronics", 5, null, "SKU123456", "SoundWave"));
+
+        assertEquals(5, productService.getProductById(product.getId()).getStock());
+        assertEquals(StockReservationResult.RESERVED, productService.reserveStock(product.getId(), 2));
+        assertEquals(3, productService.getProductById(product.getId()).getStock());
+        assertEquals(StockReservationResult.INSUFFICIENT_STOCK, productService.reserveStock(product.getId(), 4));
+        assertThrows(IllegalArgumentException.class, () -> productService.reserveStock(product.getId(), 0));
+    }
+
     @Test
     void testDeleteProductByIdNotExists(){
         boolean deleted = productService.deleteProduct(9999L);
 
         assertFalse(deleted);
     }
+
+    @Test
+    void testGetProductBySkuFollowsWrites(){
+        Product product = productService.createProduct(new Product(null, "Cable", null, new BigDecimal("5.00"), null, 10, null, "CABLE1", null));
+
+        assertEquals(product.getId(), productService.getProductBySku("CABLE1").getId());
+        // Shares the by-id cache, so a SKU lookup warms it and a repeat is served from it
+        assertNotNull(cacheManager.getCache(CacheConfig.PRODUCTS_CACHE).get(product.getId()));
+
+        Product patch = new Product();
+        patch.setSku("CABLE2");
+        assertTrue(productService.patchProduct(product.getId(), patch, null));
+        assertNull(productService.getProductBySku("CABLE1"));
+        assertEquals(product.getId(), productService.getProductBySku("CABLE2").getId());
+
+        productService.deleteProduct(product.getId());
+        assertNull(productService.getProductBySku("CABLE2"));
+    }
+
+    @Test
+    void testGetProductBySkuRepairsStaleEntry(){
+        Product product = productService.createProduct(new Product(null, "Cable", null, new BigDecimal("5.00"), null, 10, null, "CABLE1", null));
+        // Bypasses the service, so the index never hears about it
+        productRepository.deleteAllInBatch();
+        Product replacement = productRepository.save(new Product(null, "Cable v2", null, new BigDecimal("6.00"), null, 10, null, "CABLE1", null));
+
+        Product found = productService.getProductBySku("CABLE1");
+
+        assertNotNull(found);
+        assertEquals(replacement.getId(), found.getId());
+        assertFalse(product.getId().equals(found.getId()));
+    }
 }
@@ -0,0 +1,79 @@
+package io.johnathanluong.ecommerce.api;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+import java.util.Optional;
+
+import org.junit.jupiter.api.Test;
+
+import io.johnathanluong.ecommerce.api.index.ProductSkuIndex;
+import io.johnathanluong.ecommerce.api.repository.ProductRepository;
+
+class ProductSkuIndexTest {
+
+    @Test
+    void testMissFallsBackToRepositoryOnce() {
+        ProductRepository productRepository = mock(ProductRepository.class);
+        when(productRepository.findIdBySku("SKU1")).thenReturn(Optional.of(5L));
+        ProductSkuIndex index = new ProductSkuIndex(productRepository, 1000, 60_000, 100);
+
+        assertEquals(5L, index.resolve("SKU1"));
+        assertEquals(5L, index.resolve("SKU1"));
+        verify(productRepository, times(1)).findIdBySku("SKU1");
+    }
+
+    @Test
+    void testUnknownSkuIsRememberedUntilAProductTakesIt() {
+        ProductRepository productRepository = mock(ProductRepository.class);
+        when(productRepository.findIdBySku("NOPE")).thenReturn(Optional.empty());
+        ProductSkuIndex index = new ProductSkuIndex(productRepository, 1000, 60_000, 100);
+
+        assertNull(index.resolve("NOPE"));
+        assertNull(index.resolve("NOPE"));
+        verify(productRepository, times(1)).findIdBySku("NOPE");
+        assertEquals(0, index.size());
+
+        index.put(3L, "NOPE");
+        assertEquals(3L, index.resolve("NOPE"));
+    }
+
+    @Test
+    void testUnknownSkuIsLookedUpAgainOnceTheMissExpires() {
+        ProductRepository productRepository = mock(ProductRepository.class);
+        when(productRepository.findIdBySku("LATE")).thenReturn(Optional.empty(), Optional.of(7L));
+        ProductSkuIndex index = new ProductSkuIndex(productRepository, 1000, 0, 100);
+
+        assertNull(index.resolve("LATE"));
+        // Written outside the service, so only the database knows
+        assertEquals(7L, index.resolve("LATE"));
+        verify(productRepository, times(2)).findIdBySku("LATE");
+    }
+
+    @Test
+    void testSkuChangesAndRemovals() {
+        ProductRepository productRepository = mock(ProductRepository.class);
+        when(productRepository.findIdBySku("OLD")).thenReturn(Optional.empty());
+        ProductSkuIndex index = new ProductSkuIndex(productRepository, 1000, 60_000, 100);
+
+        index.put(1L, "OLD");
+        index.put(1L, "NEW");
+        assertNull(index.resolve("OLD"));
+        assertEquals(1L, index.resolve("NEW"));
+
+        // Another product took the SKU over
+        index.put(2L, "NEW");
+        assertEquals(2L, index.resolve("NEW"));
+        index.remove(1L);
+        assertEquals(2L, index.resolve("NEW"));
+
+        index.evict("NEW", 1L);
+        assertEquals(2L, index.resolve("NEW"));
+        index.remove(2L);
+        assertEquals(0, index.size());
+    }
+}
@@ -3,6 +3,7 @@
     import static org.mockito.ArgumentMatchers.any;
     import static org.mockito.ArgumentMatchers.eq;
     import static org.mockito.Mockito.doThrow;
+    import static org.mockito.Mockito.never;
     import static org.mockito.Mockito.times;
     import static org.mockito.Mockito.verify;
     import static org.mockito.Mockito.when;
@@ -30,7 +31,11 @@
     import com.fasterxml.jackson.databind.ObjectMapper;
 
     import io.johnathanluong.ecommerce.api.controller.ReviewControllerImpl;
+    import io.johnathanluong.ecommerce.api.dto.CursorPage;
+    import io.johnathanluong.ecommerce.api.dto.ReviewSort;
+    import io.johnathanluong.ecommerce.api.dto.ReviewView;
     import io.johnathanluong.ecommerce.api.entity.Product;
+    import io.johnathanluong.ecommerce.api.entity.ProductReviewStats;
     import io.johnathanluong.ecommerce.api.entity.Review;
     import io.johnathanluong.ecommerce.api.entity.User;
     import io.johnathanluong.ecommerce.api.exception.AuthorizationException;
@@ -38,6 +43,7 @@
     import io.johnathanluong.ecommerce.api.security.SecurityConfig;
     import io.johnathanluong.ecommerce.api.service.ProductService;
     import io.johnathanluong.ecommerce.api.service.ReviewService;
+    import io.johnathanluong.ecommerce.api.service.ReviewStatsService;
     import io.johnathanluong.ecommerce.api.service.UserDetailsServiceImpl;
     import io.johnathanluong.ecommerce.api.service.UserService;
 
@@ -56,6 +62,8 @@
         @MockitoBean
         UserService userService; 
         @MockitoBean
+        ReviewStatsService reviewStatsService;
+        @MockitoBean
         JwtTokenProvider jwtTokenProvider;
         @MockitoBean
         UserDetailsServiceImpl userDetailsServiceImpl;
@@ -134,57 +142,126 @@
         @Test
         void testGetAllReviewsOfProduct_ProductExists() throws Exception {
             Long productId = 123L;
-            Product mockProduct = new Product();
-            mockProduct.setId(productId);
 
-            Review review1 = new Review();
-            review1.setId(1L);
-            review1.setReviewText("Review 1");
-            Review review2 = new Review();
-            review2.setId(2L);
-            review2.setReviewText("Review 2");
-            List<Review> reviews = Arrays.asList(review1, review2);
+            ReviewView review1 = new ReviewView(1L, "Review 1", "POSITIVE", null, 7L, "author1");
+            ReviewView review2 = new ReviewView(2L, "Review 2", "NEGATIVE", null, 8L, "author2");
+            List<ReviewView> reviews = Arrays.asList(review1, review2);
 
-            when(productService.getProductById(productId)).thenReturn(mockProduct);
-            when(reviewService.getAllReviewsOfProduct(mockProduct)).thenReturn(reviews);
+            when(reviewService.getReviewsOfProduct(productId, ReviewSort.NEWEST, null, null)).thenReturn(new CursorPage<>(reviews, "next"));
 
             mockMvc.perform(MockMvcRequestBuilders.get("/api/products/{productId}/reviews", productId)
                             .accept(MediaType.APPLICATION_JSON))
                     .andExpect(status().isOk())
                     .andExpect(content().contentType(MediaType.APPLICATION_JSON))
-                    .andExpect(jsonPath("$[0].id").value(1))
-                    .andExpect(jsonPath("$[0].reviewText").value("Review 1"))
-                    .andExpect(jsonPath("$[1].id").value(2))
-                    .andExpect(jsonPath("$[1].reviewText").value("Review 2"));
+                    .andExpect(jsonPath("$.items[0].id").value(1))
+                    .andExpect(jsonPath("$.items[0].reviewText").value("Review 1"))
+                    .andExpect(jsonPath("$.items[1].id").value(2))
+                    .andExpect(jsonPath("$.items[1].reviewText").value("Review 2"))
+                    .andExpect(jsonPath("$.items[0].author.username").value("author1"))
+                    .andExpect(jsonPath("$.items[0].author.password").doesNotExist())
+                    .andExpect(jsonPath("$.nextCursor").value("next"));
+            // A non-empty page proves the product exists, so neither the product nor the probe is queried
+            verify(productService, never()).getProductById(any());
+            verify(productService, never()).productExists(any());
+        }
+
+        @Test
+        void testGetAllReviewsOfProduct_SortedBySentiment() throws Exception {
+            Long productId = 123L;
+
+            when(reviewService.getReviewsOfProduct(productId, ReviewSort.SENTIMENT, "abc", 10)).thenReturn(new CursorPage<>(Collections.emptyList(), null));
+            when(productService.productExists(productId)).thenReturn(true);
+
+            mockMvc.perform(MockMvcRequestBuilders.get("/api/products/{productId}/reviews", productId)
+                            .param("sort", "sentiment")
+                            .param("after", "abc")
+                            .param("limit", "10")
+                            .accept(MediaType.APPLICATION_JSON))
+                    .andExpect(status().isOk());
+            verify(reviewService, times(1)).getReviewsOfProduct(productId, ReviewSort.SENTIMENT, "abc", 10);
+        }
+
+        @Test
+        void testGetAllReviewsOfProduct_InvalidSort() throws Exception {
+            Long productId = 123L;
+
+            mockMvc.perform(MockMvcRequestBuilders.get("/api/products/{productId}/reviews", productId)
+                            .param("sort", "rating")
+                            .accept(MediaType.APPLICATION_JSON))
+                    .andExpect(status().isBadRequest());
         }
 
         @Test
         void testGetAllReviewsOfProduct_ProductExistsNoReviews() throws Exception {
             Long productId = 123L;
-            Product mockProduct = new Product();
-            mockProduct.setId(productId);
 
-            when(productService.getProductById(productId)).thenReturn(mockProduct);
-            when(reviewService.getAllReviewsOfProduct(mockProduct)).thenReturn(Collections.emptyList());
+            when(reviewService.getReviewsOfProduct(productId, ReviewSort.NEWEST, null, null)).thenReturn(new CursorPage<>(Collections.emptyList(), null));
+            when(productService.productExists(productId)).thenReturn(true);
 
             mockMvc.perform(MockMvcRequestBuilders.get("/api/products/{productId}/reviews", productId)
                             .accept(MediaType.APPLICATION_JSON))
                     .andExpect(status().isOk())
                     .andExpect(content().contentType(MediaType.APPLICATION_JSON))
-                    .andExpect(jsonPath("$").isEmpty());
+                    .andExpect(jsonPath("$.items").isEmpty());
         }
 
         @Test
         void testGetAllReviewsOfProduct_ProductNotExists() throws Exception {
             Long productId = 123L;
 
-            when(productService.getProductById(productId)).thenReturn(null);
+            when(reviewService.getReviewsOfProduct(productId, ReviewSort.NEWEST, null, null)).thenReturn(new CursorPage<>(Collections.emptyList(), null));
+            when(productService.productExists(productId)).thenReturn(false);
 
             mockMvc.perform(MockMvcRequestBuilders.get("/api/products/{productId}/reviews", productId)
                             .accept(MediaType.APPLICATION_JSON))
                     .andExpect(status().isNotFound());
         }
 
+        @Test
+        void testGetReviewSummary_StatsExist() throws Exception {
+            Long productId = 123L;
+            ProductReviewStats stats = new ProductReviewStats(productId);
+            stats.setPositiveCount(3);
+            stats.setNegativeCount(1);
+            stats.setTotalCount(4);
+
+            when(reviewStatsService.getStats(productId)).thenReturn(stats);
+
+            mockMvc.perform(MockMvcRequestBuilders.get("/api/products/{productId}/reviews/summary", productId)
+                            .accept(MediaType.APPLICATION_JSON))
+                    .andExpect(status().isOk())
+                    .andExpect(jsonPath("$.productId").value(123))
+                    .andExpect(jsonPath("$.positiveCount").value(3))
+                    .andExpect(jsonPath("$.negativeCount").value(1))
+                    .andExpect(jsonPath("$.totalCount").value(4));
+            verify(productService, never()).productExists(any());
+        }
+
+        @Test
+        void testGetReviewSummary_ProductWithoutReviews() throws Exception {
+            Long productId = 123L;
+
+            when(reviewStatsService.getStats(productId)).thenReturn(null);
+            when(productService.productExists(productId)).thenReturn(true);
+
+            mockMvc.perform(MockMvcRequestBuilders.get("/api/products/{productId}/reviews/summary", productId)
+                            .accept(MediaType.APPLICATION_JSON))
+                    .andExpect(status().isOk())
+                    .andExpect(jsonPath("$.totalCount").value(0));
+        }
+
+        @Test
+        void testGetReviewSummary_ProductNotExists() throws Exception {
+            Long productId = 123L;
+
+            when(reviewStatsService.getStats(productId)).thenReturn(null);
+            when(productService.productExists(productId)).thenReturn(false);
+
+            mockMvc.perform(MockMvcRequestBuilders.get("/api/products/{productId}/reviews/summary", productId)
+                            .accept(MediaType.APPLICATION_JSON))
+                    .andExpect(status().isNotFound());
+        }
+
         @Test
         void testGetReviewById_ReviewExists() throws Exception {
             Long reviewId = 456L;
@@ -311,6 +388,7 @@
             existingReview.setId(reviewId);
             existingReview.setUser(mockUser);
             when(reviewService.getReviewById(reviewId)).thenReturn(existingReview);
+            when(reviewService.deleteReview(reviewId, mockUser)).thenReturn(true);
 
             mockMvc.perform(MockMvcRequestBuilders.delete("/api/reviews/{id}", reviewId)
                             .with(user("testUser")))
@@ -3,27 +3,47 @@ package io.johnathanluong.ecommerce.api;
 import static org.junit.jupiter.api.Assertions.assertEquals;
 import static org.junit.jupiter.api.Assertions.assertNotNull;
 import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
 
 import java.math.BigDecimal;
+import java.nio.charset.StandardCharsets;
 import java.time.LocalDateTime;
+import java.util.Base64;
 import java.util.List;
 
+import org.hibernate.SessionFactory;
+import org.hibernate.stat.Statistics;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.data.domain.Limit;
 import org.springframework.test.annotation.DirtiesContext;
 import org.springframework.test.context.ActiveProfiles;
 
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+import io.johnathanluong.ecommerce.api.dto.CursorPage;
+import io.johnathanluong.ecommerce.api.dto.ReviewSort;
+import io.johnathanluong.ecommerce.api.dto.ReviewView;
 import io.johnathanluong.ecommerce.api.entity.Product;
 import io.johnathanluong.ecommerce.api.entity.Review;
 import io.johnathanluong.ecommerce.api.entity.User;
+import io.johnathanluong.ecommerce.api.entity.ProductReviewStats;
 import io.johnathanluong.ecommerce.api.repository.ProductRepository;
+import io.johnathanluong.ecommerce.api.repository.ProductReviewStatsRepository;
 import io.johnathanluong.ecommerce.api.repository.ReviewRepository;
+import io.johnathanluong.ecommerce.api.repository.UserRepository;
 import io.johnathanluong.ecommerce.api.service.ReviewServiceImpl;
+import io.johnathanluong.ecommerce.api.service.ReviewStatsService;
+import io.zonky.test.db.AutoConfigureEmbeddedDatabase;
+import io.zonky.test.db.AutoConfigureEmbeddedDatabase.DatabaseProvider;
+import jakarta.persistence.EntityManagerFactory;
 
-@SpringBootTest
+@SpringBootTest(properties = "spring.jpa.properties.hibernate.generate_statistics=true")
 @DirtiesContext(classMode = DirtiesContext.ClassMode.BEFORE_EACH_TEST_METHOD)
+@AutoConfigureEmbeddedDatabase(provider = DatabaseProvider.ZONKY)
 @ActiveProfiles("test")
 class ReviewServiceImplTest {
     @Autowired
@@ -32,16 +52,33 @@ class ReviewServiceImplTest {
     @Autowired
     ProductRepository productRepository;
 
+    @Autowired
+    UserRepository userRepository;
+
+    @Autowired
+    ProductReviewStatsRepository productReviewStatsRepository;
+
     @Autowired
     ReviewServiceImpl reviewService;
 
+    @Autowired
+    ReviewStatsService reviewStatsService;
+
+    @Autowired
+    EntityManagerFactory entityManagerFactory;
+
+    @Autowired
+    ObjectMapper objectMapper;
+
     Product product;
     User user;
 
     @BeforeEach
     void setUp(){
         reviewRepository.deleteAllInBatch();
+        productReviewStatsRepository.deleteAllInBatch();
         productRepository.deleteAllInBatch();
+        userRepository.deleteAllInBatch();
 
         product = new Product(
             null, 
@@ -54,7 +91,7 @@ class ReviewServiceImplTest {
             "SKU123456", 
             "SoundWave"
         );
-        user = new User();
+        user = userRepository.save(new User("reviewer", "password", "reviewer@example.com"));
         product = productRepository.save(product);
     }
 
@@ -68,7 +105,7 @@ class ReviewServiceImplTest {
         assertNotNull(createdReview);
         assertEquals(product, createdReview.getProduct());
         assertEquals("SAMPLE TEXT", createdReview.getReviewText());
-        assertEquals("POSITIVE", createdReview.getSentiment());
+        assertEquals("PENDING", createdReview.getSentiment());
         assertNotNull(createdReview.getId());
         assertNotNull(createdReview.getCreatedAt());
     }
@@ -104,20 +141,141 @@ class ReviewServiceImplTest {
         reviewService.createReview(review1, user);
         reviewService.createReview(review2, user);
 
-        List<Review> reviews = reviewService.getAllReviewsOfProduct(product); 
+        List<ReviewView> reviews = reviewService.getReviewsOfProduct(product.getId(), ReviewSort.NEWEST, null, null).getItems();
 
+        // Newest first
         assertNotNull(reviews);
-        assertEquals(reviews.get(0).getReviewText(), review1.getReviewText());
-        assertEquals(reviews.get(0).getSentiment(), review1.getSentiment());
-        assertEquals(reviews.get(1).getReviewText(), review2.getReviewText());
-        assertEquals(reviews.get(1).getSentiment(), review2.getSentiment());
+        assertEquals(reviews.get(0).getReviewText(), review2.getReviewText());
+        assertEquals(reviews.get(0).getSentiment(), review2.getSentiment());
+        assertEquals(reviews.get(1).getReviewText(), review1.getReviewText());
+        assertEquals(reviews.get(1).getSentiment(), review1.getSentiment());
+        assertEquals(2, reviewService.getAllReviewsOfProduct(product.getId()).size());
     }
 
     @Test
     void testGetAllReviewsByProductNotExists(){
-        List<Review> reviews = reviewService.getAllReviewsOfProduct(product); 
+        CursorPage<ReviewView> page = reviewService.getReviewsOfProduct(product.getId(), ReviewSort.NEWEST, null, null);
 
-        assertEquals(0, reviews.size());
+        assertEquals(0, page.getItems().size());
+        assertNull(page.getNextCursor());
+    }
+
+    @Test
+    @DirtiesContext
+    void testGetReviewsByProductPaginates(){
+        for(int i = 1; i <= 5; i++){
+            reviewService.createReview(new Review(null, user, product, "SAMPLE TEXT" + i, null), user);
+        }
+
+        CursorPage<ReviewView> first = reviewService.getReviewsOfProduct(product.getId(), ReviewSort.NEWEST, null, 2);
+        CursorPage<ReviewView> second = reviewService.getReviewsOfProduct(product.getId(), ReviewSort.NEWEST, first.getNextCursor(), 2);
+        CursorPage<ReviewView> third = reviewService.getReviewsOfProduct(product.getId(), ReviewSort.NEWEST, second.getNextCursor(), 2);
+
+        assertEquals("SAMPLE TEXT5", first.getItems().get(0).getReviewText());
+        assertEquals("SAMPLE TEXT3", second.getItems().get(0).getReviewText());
+        assertEquals(1, third.getItems().size());
+        assertEquals("SAMPLE TEXT1", third.getItems().get(0).getReviewText());
+        assertNull(third.getNextCursor());
+    }
+
+    @Test
+    @DirtiesContext
+    void testGetReviewsByProductSortedBySentiment(){
+        // Saved directly so the stored sentiment is not replaced by the background scorer
+        Review review1 = saveScoredReview("SAMPLE TEXT1", "POSITIVE");
+        Review review2 = saveScoredReview("SAMPLE TEXT2", "NEGATIVE");
+        Review review3 = saveScoredReview("SAMPLE TEXT3", "POSITIVE");
+
+        CursorPage<ReviewView> first = reviewService.getReviewsOfProduct(product.getId(), ReviewSort.SENTIMENT, null, 2);
+        CursorPage<ReviewView> second = reviewService.getReviewsOfProduct(product.getId(), ReviewSort.SENTIMENT, first.getNextCursor(), 2);
+
+        assertEquals(review2.getId(), first.getItems().get(0).getId());
+        assertEquals(review3.getId(), first.getItems().get(1).getId());
+        assertEquals(review1.getId(), second.getItems().get(0).getId());
+        assertNull(second.getNextCursor());
+    }
+
+    @Test
+    @DirtiesContext
+    void testGetReviewsByProductUsesOneStatementPerPage() throws Exception{
+        assertEquals(1, statementsToLoadAndSerializePage(3));
+        // Every review has its own author, which would cost a users select each if authors were lazy loaded
+        assertEquals(1, statementsToLoadAndSerializePage(25));
+    }
+
+    @Test
+    @DirtiesContext
+    void testReviewStatsFollowReviewWrites(){
+        Review first = reviewService.createReview(new Review(null, user, product, "SAMPLE TEXT1", null), user);
+        reviewService.createReview(new Review(null, user, product, "SAMPLE TEXT2", null), user);
+
+        ProductReviewStats stats = reviewStatsService.getStats(product.getId());
+        assertEquals(2, stats.getTotalCount());
+        assertNotNull(stats.getLastReviewAt());
+
+        reviewService.deleteReview(first.getId(), user);
+
+        stats = reviewStatsService.getStats(product.getId());
+        assertEquals(1, stats.getTotalCount());
+        // Scoring may finish at any point, but every review sits in exactly one bucket
+        assertEquals(1, stats.getPositiveCount() + stats.getNegativeCount() + stats.getNeutralCount()
+            + stats.getMixedCount() + stats.getUnscoredCount());
+    }
+
+    @Test
+    @DirtiesContext
+    void testReviewStatsCountReviewsWrittenBeforeTheStatsRow(){
+        // Saved straight through the repository, like reviews written before the stats table existed
+        Review legacy = saveScoredReview("legacy1", "POSITIVE");
+        saveScoredReview("legacy2", "NEGATIVE");
+
+        ProductReviewStats stats = reviewStatsService.getStats(product.getId());
+        assertEquals(2, stats.getTotalCount());
+        assertEquals(1, stats.getPositiveCount());
+        assertEquals(1, stats.getNegativeCount());
+
+        productReviewStatsRepository.deleteAllInBatch();
+        reviewService.createReview(new Review(null, user, product, "SAMPLE TEXT1", null), user);
+
+        stats = reviewStatsService.getStats(product.getId());
+        assertEquals(3, stats.getTotalCount());
+        assertEquals(1, stats.getPositiveCount());
+        assertEquals(1, stats.getNegativeCount());
+
+        productReviewStatsRepository.deleteAllInBatch();
+        reviewService.deleteReview(legacy.getId(), user);
+
+        stats = reviewStatsService.getStats(product.getId());
+        assertEquals(2, stats.getTotalCount());
+        assertEquals(0, stats.getPositiveCount());
+        assertEquals(1, stats.getNegativeCount());
+    }
+
+    @Test
+    void testGetReviewsByProductInvalidCursor(){
+        assertThrows(IllegalArgumentException.class,
+            () -> reviewService.getReviewsOfProduct(product.getId(), ReviewSort.NEWEST, "garbage", null));
+    }
+
+    @Test
+    void testGetReviewsByProductRejectsCursorWithoutSentiment(){
+        String cursor = Base64.getUrlEncoder().withoutPadding()
+            .encodeToString("null|2024-01-01T00:00|1".getBytes(StandardCharsets.UTF_8));
+
+        assertThrows(IllegalArgumentException.class,
+            () -> reviewService.getReviewsOfProduct(product.getId(), ReviewSort.SENTIMENT, cursor, null));
+    }
+
+    @Test
+    @DirtiesContext
+    void testBackfillSentimentMarksLegacyReviewsPending(){
+        Review legacy = saveScoredReview("SAMPLE TEXT1", null);
+        Review scored = saveScoredReview("SAMPLE TEXT2", "POSITIVE");
+
+        reviewService.backfillSentiment();
+
+        assertEquals("PENDING", reviewRepository.findById(legacy.getId()).get().getSentiment());
+        assertEquals("POSITIVE", reviewRepository.findById(scored.getId()).get().getSentiment());
     }
 
     @Test
@@ -128,14 +286,14 @@ class ReviewServiceImplTest {
 
         Review review2 = new Review(null, user, product, "SAMPLE TEXT2", "NEGATIVE");
 
-        reviewService.updateReview(createdReview.getId(), review2, user);
+        Review updatedReview = reviewService.updateReview(createdReview.getId(), review2, user);
         Review retrievedReview = reviewService.getReviewById(createdReview.getId());
 
+        assertEquals("PENDING", updatedReview.getSentiment());
         assertNotNull(retrievedReview);
         assertNotNull(retrievedReview.getId());
         assertNotNull(retrievedReview.getProduct());
         assertEquals("SAMPLE TEXT2", retrievedReview.getReviewText());
-        assertEquals("NEGATIVE", retrievedReview.getSentiment());
     }
 
     @Test
@@ -164,4 +322,44 @@ class ReviewServiceImplTest {
         reviewService.deleteReview(1234L, user);
         assertNull(reviewService.getReviewById(1234L));
     }
+
+    @Test
+    @DirtiesContext
+    void testSweepSkipsFailedReviews(){
+        Review pending = saveScoredReview("pending", "PENDING");
+        saveScoredReview("failed", "FAILED");
+        Review unknown = saveScoredReview("unknown", "UNKNOWN");
+        saveScoredReview("scored", "POSITIVE");
+
+        List<Review> unscored = reviewRepository.findUnscoredAfter(0L, Limit.of(10));
+
+        assertEquals(List.of(pending.getId(), unknown.getId()), unscored.stream().map(Review::getId).toList());
+        assertEquals(List.of(unknown.getId()),
+            reviewRepository.findUnscoredAfter(pending.getId(), Limit.of(10)).stream().map(Review::getId).toList());
+    }
+
+    private long statementsToLoadAndSerializePage(int reviewCount) throws Exception{
+        reviewRepository.deleteAllInBatch();
+        for(int i = 0; i < reviewCount; i++){
+            User author = userRepository.save(new User("author" + reviewCount + "_" + i, "password", null));
+            Review review = new Review(null, author, product, "SAMPLE TEXT" + i, "POSITIVE");
+            review.setCreatedAt(LocalDateTime.now());
+            reviewRepository.save(review);
+        }
+
+        Statistics statistics = entityManagerFactory.unwrap(SessionFactory.class).getStatistics();
+        statistics.clear();
+        CursorPage<ReviewView> page = reviewService.getReviewsOfProduct(product.getId(), ReviewSort.NEWEST, null, 50);
+        String json = objectMapper.writeValueAsString(page);
+
+        assertEquals(reviewCount, page.getItems().size());
+        assertTrue(json.contains("\"username\":\"author" + reviewCount + "_0\""));
+        return statistics.getPrepareStatementCount();
+    }
+
+    private Review saveScoredReview(String text, String sentiment){
+        Review review = new Review(null, user, product, text, sentiment);
+        review.setCreatedAt(LocalDateTime.now());
+        return reviewRepository.save(review);
+    }
 }
@@ -0,0 +1,279 @@
+package io.johnathanluong.ecommerce.api;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyLong;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.after;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.when;
+import static org.mockito.Mockito.timeout;
+import static org.mockito.Mockito.verify;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+
+import io.github.resilience4j.bulkhead.Bulkhead;
+import io.github.resilience4j.circuitbreaker.CircuitBreaker;
+import io.johnathanluong.ecommerce.api.entity.Product;
+import io.johnathanluong.ecommerce.api.entity.Review;
+import io.johnathanluong.ecommerce.api.repository.ReviewRepository;
+import io.johnathanluong.ecommerce.api.sentiment.ComprehendSentimentAnalyzer;
+import io.johnathanluong.ecommerce.api.sentiment.SentimentAnalysisPipeline;
+import io.johnathanluong.ecommerce.api.sentiment.SentimentCache;
+import io.johnathanluong.ecommerce.api.service.ReviewStatsService;
+import software.amazon.awssdk.services.comprehend.ComprehendClient;
+import software.amazon.awssdk.services.comprehend.model.BatchDetectSentimentItemResult;
+import software.amazon.awssdk.services.comprehend.model.BatchDetectSentimentRequest;
+import software.amazon.awssdk.services.comprehend.model.BatchDetectSentimentResponse;
+import software.amazon.awssdk.services.comprehend.model.BatchItemError;
+import software.amazon.awssdk.services.comprehend.model.ComprehendException;
+import software.amazon.awssdk.services.comprehend.model.SentimentType;
+
+@ExtendWith(MockitoExtension.class)
+class SentimentAnalysisPipelineTest {
+
+    private static final Long PRODUCT_ID = 100L;
+
+    @Mock
+    private ReviewRepository reviewRepository;
+
+    @Mock
+    private ReviewStatsService reviewStatsService;
+
+    private StubComprehendClient comprehendClient;
+    private SentimentCache sentimentCache;
+    private CircuitBreaker circuitBreaker;
+    private SentimentAnalysisPipeline pipeline;
+
+    @BeforeEach
+    void setUp() {
+        comprehendClient = new StubComprehendClient();
+        sentimentCache = new SentimentCache(null, 1000, false);
+        circuitBreaker = CircuitBreaker.ofDefaults("sentiment");
+        // One worker and a long linger window so the batch boundaries are deterministic
+        pipeline = newPipeline(100, 25, 10);
+    }
+
+    private SentimentAnalysisPipeline newPipeline(int queueCapacity, int batchSize, long retryBackoffMs) {
+        return new SentimentAnalysisPipeline(new ComprehendSentimentAnalyzer(comprehendClient), reviewRepository, reviewStatsService, sentimentCache,
+            circuitBreaker, Bulkhead.ofDefaults("sentiment"), 1, queueCapacity, batchSize, 500, 3, retryBackoffMs);
+    }
+
+    @AfterEach
+    void tearDown() {
+        pipeline.shutdown();
+    }
+
+    @Test
+    void testReviewsAreCoalescedIntoBatches() {
+        for(long id = 1; id <= 30; id++){
+            pipeline.submit(id, PRODUCT_ID, "review " + id);
+        }
+
+        verify(reviewStatsService, timeout(5000).times(30))
+            .updateSentiment(anyLong(), eq(PRODUCT_ID), anyString(), eq(SentimentAnalysisPipeline.PENDING), eq("POSITIVE"));
+        assertEquals(2, comprehendClient.batchSizes.size());
+        assertEquals(25, comprehendClient.batchSizes.get(0));
+        assertEquals(5, comprehendClient.batchSizes.get(1));
+    }
+
+    @Test
+    void testResultsAreWrittenBackToTheirReviews() {
+        pipeline.submit(7L, PRODUCT_ID, "first");
+        pipeline.submit(9L, PRODUCT_ID, "second");
+
+        verify(reviewStatsService, timeout(5000)).updateSentiment(7L, PRODUCT_ID, "first", SentimentAnalysisPipeline.PENDING, "POSITIVE");
+        verify(reviewStatsService, timeout(5000)).updateSentiment(9L, PRODUCT_ID, "second", SentimentAnalysisPipeline.PENDING, "POSITIVE");
+    }
+
+    @Test
+    void testFailedItemsAreRetried() {
+        comprehendClient.failNextItem.set(true);
+
+        pipeline.submit(1L, PRODUCT_ID, "flaky");
+        pipeline.submit(2L, PRODUCT_ID, "fine");
+
+        verify(reviewStatsService, timeout(5000)).updateSentiment(1L, PRODUCT_ID, "flaky", SentimentAnalysisPipeline.PENDING, "POSITIVE");
+        verify(reviewStatsService, timeout(5000).times(1)).updateSentiment(2L, PRODUCT_ID, "fine", SentimentAnalysisPipeline.PENDING, "POSITIVE");
+        assertTrue(comprehendClient.batchSizes.size() >= 2);
+    }
+
+    @Test
+    void testFailedWriteOnlyRetriesThatReview() {
+        AtomicBoolean failed = new AtomicBoolean();
+        when(reviewStatsService.updateSentiment(anyLong(), anyLong(), anyString(), anyString(), anyString())).thenAnswer(invocation -> {
+            if(invocation.getArgument(0).equals(2L) && failed.compareAndSet(false, true)){
+                throw new IllegalStateException("write failed");
+            }
+            return true;
+        });
+
+        pipeline.submit(1L, PRODUCT_ID, "one");
+        pipeline.submit(2L, PRODUCT_ID, "two");
+        pipeline.submit(3L, PRODUCT_ID, "three");
+
+        verify(reviewStatsService, timeout(5000)).updateSentiment(1L, PRODUCT_ID, "one", SentimentAnalysisPipeline.PENDING, "POSITIVE");
+        verify(reviewStatsService, timeout(5000)).updateSentiment(3L, PRODUCT_ID, "three", SentimentAnalysisPipeline.PENDING, "POSITIVE");
+        verify(reviewStatsService, timeout(5000).times(2)).updateSentiment(2L, PRODUCT_ID, "two", SentimentAnalysisPipeline.PENDING, "POSITIVE");
+    }
+
+    @Test
+    void testReviewsThatKeepFailingAreMarkedFailed() {
+        comprehendClient.failFirstItems = true;
+
+        pipeline.submit(1L, PRODUCT_ID, "unreadable");
+
+        // Unlike UNKNOWN, FAILED is not picked up by the sweep again
+        verify(reviewStatsService, timeout(5000))
+            .updateSentiment(1L, PRODUCT_ID, "unreadable", SentimentAnalysisPipeline.PENDING, SentimentAnalysisPipeline.FAILED);
+        assertEquals(3, comprehendClient.batchSizes.size());
+    }
+
+    @Test
+    void testFullQueueLeavesReviewsForTheSweep() throws Exception {
+        pipeline.shutdown();
+        pipeline = newPipeline(1, 1, 10);
+        comprehendClient.gate = new CountDownLatch(1);
+
+        // The worker holds review 1 inside the analyzer, review 2 fills the queue and review 3 is turned away
+        pipeline.submit(1L, PRODUCT_ID, "one");
+        assertTrue(comprehendClient.called.await(5, TimeUnit.SECONDS));
+        pipeline.submit(2L, PRODUCT_ID, "two");
+        pipeline.submit(3L, PRODUCT_ID, "three");
+        verify(reviewStatsService, never()).updateSentiment(anyLong(), anyLong(), anyString(), anyString(), anyString());
+
+        comprehendClient.gate.countDown();
+        verify(reviewStatsService, timeout(5000)).updateSentiment(1L, PRODUCT_ID, "one", SentimentAnalysisPipeline.PENDING, "POSITIVE");
+        verify(reviewStatsService, timeout(5000)).updateSentiment(2L, PRODUCT_ID, "two", SentimentAnalysisPipeline.PENDING, "POSITIVE");
+        verify(reviewStatsService, after(300).never()).updateSentiment(eq(3L), anyLong(), anyString(), anyString(), anyString());
+
+        Product product = new Product();
+        product.setId(PRODUCT_ID);
+        when(reviewRepository.findUnscoredAfter(anyLong(), any()))
+            .thenReturn(List.of(new Review(3L, null, product, "three", SentimentAnalysisPipeline.PENDING)));
+        pipeline.requeuePending();
+        verify(reviewStatsService, timeout(5000)).updateSentiment(3L, PRODUCT_ID, "three", SentimentAnalysisPipeline.PENDING, "POSITIVE");
+    }
+
+    @Test
+    void testFailedBatchDoesNotHoldUpTheWorker() {
+        pipeline.shutdown();
+        pipeline = newPipeline(100, 1, 2000);
+        comprehendClient.failNextCall.set(true);
+
+        pipeline.submit(1L, PRODUCT_ID, "broken");
+        pipeline.submit(2L, PRODUCT_ID, "fine");
+
+        // The only worker scores the next review while the failed one waits out its backoff
+        verify(reviewStatsService, timeout(1000)).updateSentiment(2L, PRODUCT_ID, "fine", SentimentAnalysisPipeline.PENDING, "POSITIVE");
+        verify(reviewStatsService, never()).updateSentiment(eq(1L), anyLong(), anyString(), anyString(), anyString());
+        verify(reviewStatsService, timeout(5000)).updateSentiment(1L, PRODUCT_ID, "broken", SentimentAnalysisPipeline.PENDING, "POSITIVE");
+    }
+
+    @Test
+    void testRepeatedTextsAreAnalyzedOnce() {
+        pipeline.submit(1L, PRODUCT_ID, "Great product!");
+        pipeline.submit(2L, PRODUCT_ID, "great   product");
+        pipeline.submit(3L, PRODUCT_ID, "Fast shipping");
+
+        verify(reviewStatsService, timeout(5000)).updateSentiment(1L, PRODUCT_ID, "Great product!", SentimentAnalysisPipeline.PENDING, "POSITIVE");
+        verify(reviewStatsService, timeout(5000)).updateSentiment(2L, PRODUCT_ID, "great   product", SentimentAnalysisPipeline.PENDING, "POSITIVE");
+        verify(reviewStatsService, timeout(5000)).updateSentiment(3L, PRODUCT_ID, "Fast shipping", SentimentAnalysisPipeline.PENDING, "POSITIVE");
+        assertEquals(List.of(2), comprehendClient.batchSizes);
+
+        // Later submissions of a known text never reach the analyzer
+        pipeline.submit(4L, PRODUCT_ID, "GREAT PRODUCT.");
+        verify(reviewStatsService, timeout(5000)).updateSentiment(4L, PRODUCT_ID, "GREAT PRODUCT.", SentimentAnalysisPipeline.PENDING, "POSITIVE");
+        assertEquals(1, comprehendClient.batchSizes.size());
+    }
+
+    @Test
+    void testOpenBreakerMarksReviewsUnknown() {
+        circuitBreaker.transitionToOpenState();
+
+        pipeline.submit(1L, PRODUCT_ID, "Great product!");
+
+        verify(reviewStatsService, timeout(5000))
+            .updateSentiment(1L, PRODUCT_ID, "Great product!", SentimentAnalysisPipeline.PENDING, SentimentAnalysisPipeline.UNKNOWN);
+        assertEquals(0, comprehendClient.batchSizes.size());
+
+        // The sweep leaves them alone until the breaker lets calls through again
+        pipeline.requeuePending();
+        verify(reviewRepository, never()).findUnscoredAfter(anyLong(), any());
+    }
+
+    @Test
+    void testSweepRescoresUnknownReviews() {
+        Product product = new Product();
+        product.setId(PRODUCT_ID);
+        Review review = new Review(5L, null, product, "Fast shipping", SentimentAnalysisPipeline.UNKNOWN);
+        when(reviewRepository.findUnscoredAfter(anyLong(), any())).thenReturn(List.of(review));
+
+        pipeline.requeuePending();
+
+        verify(reviewStatsService, timeout(5000))
+            .updateSentiment(5L, PRODUCT_ID, "Fast shipping", SentimentAnalysisPipeline.UNKNOWN, "POSITIVE");
+    }
+
+    // Answers every document as POSITIVE. It can fail the first document of the next call or of every call,
+    // or the whole next call, and can hold calls at a gate until the test opens it.
+    private static class StubComprehendClient implements ComprehendClient {
+        private final List<Integer> batchSizes = new CopyOnWriteArrayList<>();
+        private final AtomicBoolean failNextItem = new AtomicBoolean(false);
+        private final AtomicBoolean failNextCall = new AtomicBoolean(false);
+        private volatile boolean failFirstItems;
+        private final CountDownLatch called = new CountDownLatch(1);
+        private volatile CountDownLatch gate;
+
+        @Override
+        public BatchDetectSentimentResponse batchDetectSentiment(BatchDetectSentimentRequest request) {
+            called.countDown();
+            if(gate != null){
+                try{
+                    gate.await();
+                } catch(InterruptedException e){
+                    Thread.currentThread().interrupt();
+                }
+            }
+            batchSizes.add(request.textList().size());
+            if(failNextCall.getAndSet(false)){
+                throw ComprehendException.builder().message("throttled").build();
+            }
+            List<BatchDetectSentimentItemResult> results = new ArrayList<>();
+            List<BatchItemError> errors = new ArrayList<>();
+            boolean fail = failNextItem.getAndSet(false) || failFirstItems;
+            for(int i = 0; i < request.textList().size(); i++){
+                if(fail && i == 0){
+                    errors.add(BatchItemError.builder().index(i).errorCode("InternalServerException").errorMessage("boom").build());
+                }
+                else{
+                    results.add(BatchDetectSentimentItemResult.builder().index(i).sentiment(SentimentType.POSITIVE).build());
+                }
+            }
+            return BatchDetectSentimentResponse.builder().resultList(results).errorList(errors).build();
+        }
+
+        @Override
+        public String serviceName() {
+            return SERVICE_NAME;
+        }
+
+        @Override
+        public void close() {
+        }
+    }
+}
@@ -0,0 +1,68 @@
+package io.johnathanluong.ecommerce.api;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+import java.time.LocalDateTime;
+import java.util.Optional;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+
+import io.johnathanluong.ecommerce.api.entity.SentimentCacheEntry;
+import io.johnathanluong.ecommerce.api.repository.SentimentCacheRepository;
+import io.johnathanluong.ecommerce.api.sentiment.SentimentCache;
+
+@ExtendWith(MockitoExtension.class)
+class SentimentCacheTest {
+
+    @Mock
+    private SentimentCacheRepository repository;
+
+    @Test
+    void testNormalizedTextsShareAnEntry() {
+        SentimentCache cache = new SentimentCache(repository, 100, false);
+
+        assertNull(cache.get("Great product!"));
+        cache.put("Great product!", "POSITIVE");
+
+        assertEquals("POSITIVE", cache.get("great  product"));
+        assertEquals("POSITIVE", cache.get("GREAT PRODUCT."));
+        assertEquals(2, cache.getHits());
+        assertEquals(1, cache.getMisses());
+        assertEquals(2.0 / 3, cache.hitRatio(), 0.0001);
+    }
+
+    @Test
+    void testDifferentWordsHaveDifferentKeys() {
+        assertNotEquals(SentimentCache.key("Great product"), SentimentCache.key("Great products"));
+        assertEquals(64, SentimentCache.key("anything").length());
+    }
+
+    @Test
+    void testPersistentTableIsConsultedOnMemoryMiss() {
+        SentimentCache cache = new SentimentCache(repository, 100, true);
+        String key = SentimentCache.key("Fast shipping");
+        when(repository.findById(key)).thenReturn(Optional.of(new SentimentCacheEntry(key, "POSITIVE", LocalDateTime.now())));
+
+        assertEquals("POSITIVE", cache.get("Fast shipping"));
+        // Served from memory afterwards
+        assertEquals("POSITIVE", cache.get("fast shipping!"));
+        verify(repository).findById(key);
+    }
+
+    @Test
+    void testPutWritesThroughWhenPersistent() {
+        SentimentCache cache = new SentimentCache(repository, 100, true);
+
+        cache.put("Broke after a day", "NEGATIVE");
+
+        verify(repository).save(any(SentimentCacheEntry.class));
+    }
+}
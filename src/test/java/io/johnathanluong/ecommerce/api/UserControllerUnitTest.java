@@ -26,7 +26,9 @@ import io.johnathanluong.ecommerce.api.controller.UserControllerImpl;
 import io.johnathanluong.ecommerce.api.entity.User;
 import io.johnathanluong.ecommerce.api.exception.EmailAlreadyExistsException;
 import io.johnathanluong.ecommerce.api.exception.UsernameAlreadyExistsException;
+import io.johnathanluong.ecommerce.api.security.JwtTokenProvider;
 import io.johnathanluong.ecommerce.api.service.UserService;
+import io.johnathanluong.ecommerce.api.service.UserDetailsServiceImpl;
 import jakarta.validation.ValidationException;
 
 @WebMvcTest(value = UserControllerImpl.class, excludeAutoConfiguration = SecurityAutoConfiguration.class)
@@ -41,6 +43,12 @@ class UserControllerUnitTest {
     @MockitoBean
     private UserService userService;
 
+    @MockitoBean
+    JwtTokenProvider jwtTokenProvider;
+
+    @MockitoBean
+    UserDetailsServiceImpl userDetailsServiceImpl;
+
     @Test
     void createUser_Successful() throws Exception {
         User newUser = new User("newUser", "password", "new@email.com");
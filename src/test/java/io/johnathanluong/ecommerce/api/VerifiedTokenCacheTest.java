@@ -0,0 +1,116 @@
+package io.johnathanluong.ecommerce.api;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.time.Clock;
+import java.time.Instant;
+import java.time.ZoneId;
+import java.time.ZoneOffset;
+import java.util.Date;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import io.johnathanluong.ecommerce.api.security.VerifiedTokenCache;
+import io.jsonwebtoken.Claims;
+import io.jsonwebtoken.Jwts;
+
+class VerifiedTokenCacheTest {
+    private MutableClock clock;
+    private VerifiedTokenCache cache;
+
+    @BeforeEach
+    void setUp() {
+        clock = new MutableClock(1_000_000L);
+        cache = new VerifiedTokenCache(2, clock);
+    }
+
+    @Test
+    void get_CachedToken_ReturnsClaimsAndCountsHit() {
+        Claims claims = claimsExpiringAt(clock.millis() + 60_000);
+        cache.put("token", claims);
+
+        assertSame(claims, cache.get("token"));
+        assertEquals(1, cache.getHits());
+        assertEquals(0, cache.getMisses());
+    }
+
+    @Test
+    void get_ExpiredEntry_IsNeverServed() {
+        cache.put("token", claimsExpiringAt(clock.millis() + 60_000));
+        clock.advance(60_000);
+
+        assertNull(cache.get("token"));
+        assertEquals(1, cache.getMisses());
+        assertEquals(0, cache.size());
+    }
+
+    @Test
+    void put_TokenWithoutExpiry_IsNotCached() {
+        cache.put("token", Jwts.claims().subject("testUser").build());
+
+        assertNull(cache.get("token"));
+    }
+
+    @Test
+    void put_FullCache_StaysBounded() {
+        for(int i = 0; i < 100; i++){
+            cache.put("token" + i, claimsExpiringAt(clock.millis() + 60_000));
+        }
+
+        assertTrue(cache.size() <= 2, "size: " + cache.size());
+    }
+
+    @Test
+    void put_ExpiredEntries_AreDroppedWithoutBeingRead() {
+        cache.put("short", claimsExpiringAt(clock.millis() + 1_000));
+        cache.put("long", claimsExpiringAt(clock.millis() + 60_000));
+        clock.advance(1_000);
+
+        cache.put("new", claimsExpiringAt(clock.millis() + 60_000));
+
+        assertEquals(2, cache.size());
+        assertNull(cache.get("short"));
+        assertNotNull(cache.get("long"));
+    }
+
+    private Claims claimsExpiringAt(long millis) {
+        return Jwts.claims().subject("testUser").expiration(new Date(millis)).build();
+    }
+
+    private static class MutableClock extends Clock {
+        private long millis;
+
+        MutableClock(long millis) {
+            this.millis = millis;
+        }
+
+        void advance(long deltaMillis) {
+            millis += deltaMillis;
+        }
+
+        @Override
+        public ZoneId getZone() {
+            return ZoneOffset.UTC;
+        }
+
+        @Override
+        public Clock withZone(ZoneId zone) {
+            return this;
+        }
+
+        @Override
+        public Instant instant() {
+            return Instant.ofEpochMilli(millis);
+        }
+
+        @Override
+        public long millis() {
+            return millis;
+        }
+    }
+}
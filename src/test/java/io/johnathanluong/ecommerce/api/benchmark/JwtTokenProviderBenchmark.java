@@ -0,0 +1,74 @@
+package io.johnathanluong.ecommerce.api.benchmark;
+
+import java.util.concurrent.TimeUnit;
+
+import javax.crypto.SecretKey;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+import org.springframework.security.authentication.UsernamePasswordAuthenticationToken;
+
+import io.johnathanluong.ecommerce.api.security.JwtTokenProvider;
+import io.jsonwebtoken.Jwts;
+import io.jsonwebtoken.io.Decoders;
+import io.jsonwebtoken.security.Keys;
+
+// Run with: ./mvnw test-compile exec:java -Dexec.classpathScope=test -Dexec.mainClass=io.johnathanluong.ecommerce.api.benchmark.JwtTokenProviderBenchmark
+// Add "-prof gc" through the OptionsBuilder to compare allocation per operation as well as latency
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@State(Scope.Benchmark)
+@Fork(1)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+public class JwtTokenProviderBenchmark {
+    private static final String SECRET = "c3VwZXJzZWN1cmVzZWNyZXRrZXlmb3JiZW5jaG1hcmtpbmdqd3RzMTIzNA==";
+
+    private JwtTokenProvider jwtTokenProvider;
+    private String token;
+
+    @Setup
+    public void setUp() {
+        jwtTokenProvider = new JwtTokenProvider(SECRET, 3600000, "primary", "", 10000);
+        token = jwtTokenProvider.generateToken(new UsernamePasswordAuthenticationToken("benchmarkUser", null));
+    }
+
+    // What every validateToken/getUsernameFromJwt call used to pay: decode the secret, derive the key, build a parser
+    @Benchmark
+    public String rebuildKeyAndParserPerCall() {
+        SecretKey key = Keys.hmacShaKeyFor(Decoders.BASE64.decode(SECRET));
+        return Jwts.parser()
+                .verifyWith(key)
+                .build()
+                .parseSignedClaims(token)
+                .getPayload()
+                .getSubject();
+    }
+
+    @Benchmark
+    public String sharedKeyAndParser() {
+        return jwtTokenProvider.getUsernameFromJwt(token);
+    }
+
+    @Benchmark
+    public String verifiedTokenCacheHit() {
+        return jwtTokenProvider.resolveClaims(token).getSubject();
+    }
+
+    public static void main(String[] args) throws RunnerException {
+        new Runner(new OptionsBuilder()
+                .include(JwtTokenProviderBenchmark.class.getSimpleName())
+                .build()).run();
+    }
+}